@@ -0,0 +1,181 @@
+package org.classinfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ResolvedModule;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassInfoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+
+        List<byte[]> classes;
+        List<ClassInfo> parsed;
+        String[] names;
+        String[] descriptors;
+
+        @Setup
+        public void load() throws IOException {
+            classes = loadBootLayer();
+            parsed = new ArrayList<>(classes.size());
+            List<String> names = new ArrayList<>();
+            List<String> descriptors = new ArrayList<>();
+            ClassVisitor collector = new ClassVisitor() {
+                @Override
+                public boolean visitField(int accessFlags, String name, String descriptor) {
+                    names.add(name);
+                    descriptors.add(descriptor);
+                    return false;
+                }
+
+                @Override
+                public boolean visitMethod(int accessFlags, String name, String descriptor) {
+                    names.add(name);
+                    descriptors.add(descriptor);
+                    return false;
+                }
+            };
+            for (byte[] bytes : classes) {
+                parsed.add(ClassInfo.parse(ByteBuffer.wrap(bytes)));
+                ClassInfo.accept(ByteBuffer.wrap(bytes), collector, 0);
+            }
+            this.names = names.toArray(new String[0]);
+            this.descriptors = descriptors.toArray(new String[0]);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SingleClass {
+
+        @Param({"small", "medium", "huge"})
+        String size;
+
+        @Param({"0", "1"})
+        int flags;
+
+        byte[] bytes;
+        ClassInfo parsed;
+
+        @Setup
+        public void load() throws IOException {
+            List<byte[]> classes = loadBootLayer();
+            classes.sort(Comparator.comparingInt(bytes -> bytes.length));
+            switch (size) {
+                case "small":
+                    bytes = classes.get(0);
+                    break;
+                case "medium":
+                    bytes = classes.get(classes.size() / 2);
+                    break;
+                default:
+                    bytes = classes.get(classes.size() - 1);
+                    break;
+            }
+            parsed = ClassInfo.parse(ByteBuffer.wrap(bytes), flags);
+        }
+    }
+
+    static List<byte[]> loadBootLayer() throws IOException {
+        List<byte[]> classes = new ArrayList<>();
+        for (ResolvedModule module : ModuleLayer.boot().configuration().modules()) {
+            try (ModuleReader reader = module.reference().open()) {
+                for (String name : (Iterable<String>) reader.list().filter(c -> c.endsWith(".class"))::iterator) {
+                    ByteBuffer buffer = reader.read(name).orElseThrow();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    reader.release(buffer);
+                    classes.add(bytes);
+                }
+            }
+        }
+        return classes;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parseCorpus(Corpus corpus, Blackhole blackhole) throws IOException {
+        for (byte[] bytes : corpus.classes) {
+            blackhole.consume(ClassInfo.parse(ByteBuffer.wrap(bytes)));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void constructCorpus(Corpus corpus, Blackhole blackhole) throws IOException {
+        for (byte[] bytes : corpus.classes) {
+            blackhole.consume(new ClassInfo(new ByteArrayInputStream(bytes)));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void validateCorpus(Corpus corpus) {
+        for (ClassInfo classInfo : corpus.parsed) {
+            classInfo.validate();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void toStringCorpus(Corpus corpus, Blackhole blackhole) {
+        for (ClassInfo classInfo : corpus.parsed) {
+            blackhole.consume(classInfo.toString());
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void signatureCorpus(Corpus corpus, Blackhole blackhole) {
+        String[] names = corpus.names;
+        String[] descriptors = corpus.descriptors;
+        for (int i = 0; i < names.length; i++) {
+            blackhole.consume(Utils.getSignature(names[i], descriptors[i]));
+        }
+    }
+
+    @Benchmark
+    public ClassInfo parseClass(SingleClass single) throws IOException {
+        return ClassInfo.parse(ByteBuffer.wrap(single.bytes), single.flags);
+    }
+
+    @Benchmark
+    public void validateClass(SingleClass single) {
+        single.parsed.validate();
+    }
+
+    @Benchmark
+    public String toStringClass(SingleClass single) {
+        return single.parsed.toString();
+    }
+
+    @Benchmark
+    public ConstantPool readConstantPool(SingleClass single) throws IOException {
+        ByteReader reader = new ByteReader(ByteBuffer.wrap(single.bytes));
+        reader.skip(8);
+        return CPInfo.readConstantPool(reader, (single.flags & ClassInfo.LAZY_POOL) != 0);
+    }
+}
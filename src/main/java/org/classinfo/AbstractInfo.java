@@ -1,6 +1,5 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
 abstract class AbstractInfo {
@@ -8,33 +7,51 @@ abstract class AbstractInfo {
     int accessFlags;
     private int nameIndex;
     private int descriptorIndex;
-    private AttributeInfo[] attributes;
-    private CPInfo[] pool;
-
-    AbstractInfo(DataInputStream stream, CPInfo[] pool) throws IOException {
-        accessFlags = stream.readUnsignedShort();
-        nameIndex = stream.readUnsignedShort();
-        descriptorIndex = stream.readUnsignedShort();
-        int count = stream.readUnsignedShort();
-        attributes = new AttributeInfo[count];
-        for (int i = 0; i < count; i++) {
-            attributes[i] = new AttributeInfo(stream, pool);
-        }
+    AttributeInfo[] attributes;
+    private ConstantPool pool;
+    final int offset;
+
+    AbstractInfo(ByteReader reader, ConstantPool pool, int flags) throws IOException {
+        offset = reader.position();
+        accessFlags = reader.readUnsignedShort();
+        nameIndex = reader.readUnsignedShort();
+        descriptorIndex = reader.readUnsignedShort();
+        attributes = AttributeInfo.readAttributes(reader, pool, flags);
         this.pool = pool;
+        if ((flags & ClassInfo.VALIDATE) != 0) {
+            ParseMetrics.Recorder recorder = reader.recorder;
+            int phase = recorder == null ? 0 : recorder.enter(ParseMetrics.VALIDATE);
+            validate();
+            if (recorder != null) {
+                recorder.enter(phase);
+            }
+        }
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public String getName() {
+        return pool.utf8(nameIndex);
+    }
+
+    public String getDescriptor() {
+        return pool.utf8(descriptorIndex);
     }
 
     @Override
     public String toString() {
-        String name = pool[nameIndex].toString();
-        String descriptor = pool[descriptorIndex].toString();
+        String name = pool.utf8(nameIndex);
+        String descriptor = pool.utf8(descriptorIndex);
         return Utils.getSignature(name, descriptor);
     }
 
     void validate() {
-        if(pool[nameIndex].tag != CPInfo.UTF8) {
+        if(pool.tag(nameIndex) != CPInfo.UTF8) {
             throw new ClassFormatError("invalid nameIndex");
         }
-        if(pool[descriptorIndex].tag != CPInfo.UTF8) {
+        if(pool.tag(descriptorIndex) != CPInfo.UTF8) {
             throw new ClassFormatError("invalid descriptorIndex");
         }
         for (AttributeInfo attributeInfo : attributes) {
@@ -0,0 +1,707 @@
+package org.classinfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps annotation types to the classes, fields, methods and parameters that carry them, with their element values.
+ * Only runtime visible annotations are indexed, so a {@link Builder} reads nothing but the three
+ * {@code RuntimeVisible*Annotations} attributes and skips every other attribute, {@code Code} included, by length.
+ * <p>
+ * A built index is immutable. The occurrences of each annotation type are stored contiguously in primitive arrays,
+ * so after {@link #type} the lookups below only index arrays and return shared objects. Names are dotted, except
+ * member descriptors and class values, which keep their descriptor form.
+ */
+public final class AnnotationIndex {
+
+    public static final int CLASS = 0;
+    public static final int FIELD = 1;
+    public static final int METHOD = 2;
+    public static final int PARAMETER = 3;
+    public static final int TYPE_USE = 4;
+
+    private static final int MAGIC = 0x41494458;
+    private static final int VERSION = 1;
+
+    private final String[] strings;
+    private final Map<String, Integer> types;
+    private final int[] typeNames;
+    private final int[] typeStart;
+    private final byte[] kinds;
+    private final int[] owners;
+    private final int[] names;
+    private final int[] descriptors;
+    private final int[] positions;
+    private final int[] elementStart;
+    private final int[] elementNames;
+    private final Value[] elementValues;
+
+    private AnnotationIndex(String[] strings, int[] typeNames, int[] typeStart, byte[] kinds, int[] owners,
+                            int[] names, int[] descriptors, int[] positions, int[] elementStart, int[] elementNames,
+                            Value[] elementValues) {
+        this.strings = strings;
+        this.typeNames = typeNames;
+        this.typeStart = typeStart;
+        this.kinds = kinds;
+        this.owners = owners;
+        this.names = names;
+        this.descriptors = descriptors;
+        this.positions = positions;
+        this.elementStart = elementStart;
+        this.elementNames = elementNames;
+        this.elementValues = elementValues;
+        types = new HashMap<>(typeNames.length * 2);
+        for (int type = 0; type < typeNames.length; type++) {
+            types.put(strings[typeNames[type]], type);
+        }
+    }
+
+    /**
+     * Indexes every class of {@code paths}, jars or class directories, in parallel on {@code scanner}.
+     */
+    public static AnnotationIndex build(ClassScanner scanner, Path... paths) throws IOException {
+        Builder builder = new Builder();
+        for (Path path : paths) {
+            scanner.accept(path, builder::visitor);
+        }
+        return builder.build();
+    }
+
+    public static AnnotationIndex build(ClassScanner scanner, ModuleLayer layer) throws IOException {
+        Builder builder = new Builder();
+        scanner.accept(layer, builder::visitor);
+        return builder.build();
+    }
+
+    public int getTypeCount() {
+        return typeNames.length;
+    }
+
+    /**
+     * Returns the id of the annotation type {@code annotationName} (dotted), or -1 if nothing carries it.
+     */
+    public int type(String annotationName) {
+        Integer type = types.get(annotationName);
+        return type == null ? -1 : type;
+    }
+
+    public String getTypeName(int type) {
+        return strings[typeNames[type]];
+    }
+
+    /**
+     * Returns how many times the annotation type {@code type} occurs. Its occurrences are the annotation ids from
+     * {@link #getFirstAnnotation} on.
+     */
+    public int getAnnotationCount(int type) {
+        return typeStart[type + 1] - typeStart[type];
+    }
+
+    public int getFirstAnnotation(int type) {
+        return typeStart[type];
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Returns one of {@link #CLASS}, {@link #FIELD}, {@link #METHOD}, {@link #PARAMETER} or {@link #TYPE_USE}.
+     */
+    public int getKind(int annotation) {
+        return kinds[annotation];
+    }
+
+    public String getClassName(int annotation) {
+        return strings[owners[annotation]];
+    }
+
+    /**
+     * Returns the name of the annotated field or method, or null for an annotation on the class itself.
+     */
+    public String getMemberName(int annotation) {
+        return names[annotation] < 0 ? null : strings[names[annotation]];
+    }
+
+    public String getMemberDescriptor(int annotation) {
+        return descriptors[annotation] < 0 ? null : strings[descriptors[annotation]];
+    }
+
+    /**
+     * Returns the parameter index of a {@link #PARAMETER} annotation, the {@code target_type} of a
+     * {@link #TYPE_USE} annotation and -1 otherwise.
+     */
+    public int getPosition(int annotation) {
+        return positions[annotation];
+    }
+
+    public int getElementCount(int annotation) {
+        return elementStart[annotation + 1] - elementStart[annotation];
+    }
+
+    public String getElementName(int annotation, int index) {
+        return strings[elementNames[elementStart[annotation] + index]];
+    }
+
+    public Value getElementValue(int annotation, int index) {
+        return elementValues[elementStart[annotation] + index];
+    }
+
+    /**
+     * Returns the value of the element {@code name}, or null if the class file leaves it to its default.
+     */
+    public Value getElementValue(int annotation, String name) {
+        for (int i = elementStart[annotation]; i < elementStart[annotation + 1]; i++) {
+            if (strings[elementNames[i]].equals(name)) {
+                return elementValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the distinct classes that carry {@code annotationName} anywhere, in index order.
+     */
+    public List<String> getAnnotatedClasses(String annotationName) {
+        List<String> classes = new ArrayList<>();
+        int type = type(annotationName);
+        if (type >= 0) {
+            int last = -1;
+            for (int annotation = typeStart[type]; annotation < typeStart[type + 1]; annotation++) {
+                if (owners[annotation] != last) {
+                    last = owners[annotation];
+                    classes.add(strings[last]);
+                }
+            }
+        }
+        return classes;
+    }
+
+    public void save(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                write(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static AnnotationIndex load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        out.writeInt(typeNames.length);
+        for (int type = 0; type < typeNames.length; type++) {
+            out.writeInt(typeNames[type]);
+            out.writeInt(typeStart[type + 1]);
+        }
+        for (int annotation = 0; annotation < kinds.length; annotation++) {
+            out.writeByte(kinds[annotation]);
+            out.writeInt(owners[annotation]);
+            out.writeInt(names[annotation]);
+            out.writeInt(descriptors[annotation]);
+            out.writeInt(positions[annotation]);
+            out.writeShort(getElementCount(annotation));
+            for (int i = elementStart[annotation]; i < elementStart[annotation + 1]; i++) {
+                out.writeInt(elementNames[i]);
+                elementValues[i].write(out);
+            }
+        }
+        out.flush();
+    }
+
+    public static AnnotationIndex read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an annotation index");
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int[] typeNames = new int[in.readInt()];
+        int[] typeStart = new int[typeNames.length + 1];
+        for (int type = 0; type < typeNames.length; type++) {
+            typeNames[type] = in.readInt();
+            typeStart[type + 1] = in.readInt();
+        }
+        int count = typeStart[typeNames.length];
+        byte[] kinds = new byte[count];
+        int[] owners = new int[count];
+        int[] names = new int[count];
+        int[] descriptors = new int[count];
+        int[] positions = new int[count];
+        int[] elementStart = new int[count + 1];
+        int[] elementNames = new int[16];
+        Value[] elementValues = new Value[16];
+        int elementCount = 0;
+        for (int annotation = 0; annotation < count; annotation++) {
+            kinds[annotation] = in.readByte();
+            owners[annotation] = in.readInt();
+            names[annotation] = in.readInt();
+            descriptors[annotation] = in.readInt();
+            positions[annotation] = in.readInt();
+            int elements = in.readUnsignedShort();
+            if (elementCount + elements > elementNames.length) {
+                int capacity = Math.max(elementNames.length * 2, elementCount + elements);
+                elementNames = Arrays.copyOf(elementNames, capacity);
+                elementValues = Arrays.copyOf(elementValues, capacity);
+            }
+            for (int i = 0; i < elements; i++) {
+                elementNames[elementCount] = in.readInt();
+                elementValues[elementCount++] = Value.read(in);
+            }
+            elementStart[annotation + 1] = elementCount;
+        }
+        return new AnnotationIndex(strings, typeNames, typeStart, kinds, owners, names, descriptors, positions,
+                elementStart, Arrays.copyOf(elementNames, elementCount), Arrays.copyOf(elementValues, elementCount));
+    }
+
+    private static String className(String descriptor) {
+        if (descriptor.length() > 2 && descriptor.charAt(0) == 'L' && descriptor.endsWith(";")) {
+            return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+        }
+        return descriptor;
+    }
+
+    /**
+     * An element value detached from its constant pool. Arrays and nested annotations are walked with
+     * {@link #size} and {@link #get}, which allocate nothing.
+     */
+    public static final class Value {
+
+        private static final String[] NO_NAMES = {};
+        private static final Value[] NO_VALUES = {};
+
+        private final char tag;
+        private final Object value;
+        private final String enumType;
+        private final String[] names;
+        private final Value[] values;
+
+        private Value(char tag, Object value, String enumType, String[] names, Value[] values) {
+            this.tag = tag;
+            this.value = value;
+            this.enumType = enumType;
+            this.names = names;
+            this.values = values;
+        }
+
+        static Value of(AttributeInfo.ElementValue element) {
+            switch (element.getTag()) {
+                case '@':
+                    return of((AttributeInfo.Annotation) element.getValue());
+                case '[':
+                    Object[] elements = (Object[]) element.getValue();
+                    Value[] values = new Value[elements.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = of((AttributeInfo.ElementValue) elements[i]);
+                    }
+                    return new Value('[', null, null, NO_NAMES, values);
+                case 'e':
+                    return new Value('e', element.getValue(), className(element.getEnumType()), NO_NAMES, NO_VALUES);
+                default:
+                    return new Value(element.getTag(), element.getValue(), null, NO_NAMES, NO_VALUES);
+            }
+        }
+
+        static Value of(AttributeInfo.Annotation annotation) {
+            String[] names = new String[annotation.getElementCount()];
+            Value[] values = new Value[names.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = annotation.getElementName(i);
+                values[i] = of(annotation.getElementValue(i));
+            }
+            return new Value('@', className(annotation.getType()), null, names, values);
+        }
+
+        /**
+         * Returns the element value tag of JVMS 4.7.16.1.
+         */
+        public char getTag() {
+            return tag;
+        }
+
+        /**
+         * Returns a boxed primitive, a String for {@code s}, the constant name for {@code e}, the class descriptor
+         * for {@code c}, the annotation type for {@code @} and null for {@code [}.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        public String getEnumType() {
+            return enumType;
+        }
+
+        /**
+         * Returns the number of array elements, or of element values of a nested annotation.
+         */
+        public int size() {
+            return values.length;
+        }
+
+        public Value get(int index) {
+            return values[index];
+        }
+
+        /**
+         * Returns the element name at {@code index} of a nested annotation.
+         */
+        public String getName(int index) {
+            return names[index];
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(tag);
+            switch (tag) {
+                case 'B':
+                case 'S':
+                case 'I':
+                    out.writeInt(((Number) value).intValue());
+                    break;
+                case 'C':
+                    out.writeChar((Character) value);
+                    break;
+                case 'Z':
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case 'J':
+                    out.writeLong((Long) value);
+                    break;
+                case 'F':
+                    out.writeFloat((Float) value);
+                    break;
+                case 'D':
+                    out.writeDouble((Double) value);
+                    break;
+                case 'e':
+                    out.writeUTF(enumType);
+                    out.writeUTF((String) value);
+                    break;
+                case '@':
+                    out.writeUTF((String) value);
+                    writeElements(out, names);
+                    break;
+                case '[':
+                    writeElements(out, null);
+                    break;
+                default:
+                    out.writeUTF((String) value);
+            }
+        }
+
+        private void writeElements(DataOutputStream out, String[] elementNames) throws IOException {
+            out.writeShort(values.length);
+            for (int i = 0; i < values.length; i++) {
+                if (elementNames != null) {
+                    out.writeUTF(elementNames[i]);
+                }
+                values[i].write(out);
+            }
+        }
+
+        static Value read(DataInputStream in) throws IOException {
+            char tag = (char) in.readUnsignedByte();
+            switch (tag) {
+                case 'B':
+                    return new Value(tag, (byte) in.readInt(), null, NO_NAMES, NO_VALUES);
+                case 'S':
+                    return new Value(tag, (short) in.readInt(), null, NO_NAMES, NO_VALUES);
+                case 'I':
+                    return new Value(tag, in.readInt(), null, NO_NAMES, NO_VALUES);
+                case 'C':
+                    return new Value(tag, in.readChar(), null, NO_NAMES, NO_VALUES);
+                case 'Z':
+                    return new Value(tag, in.readBoolean(), null, NO_NAMES, NO_VALUES);
+                case 'J':
+                    return new Value(tag, in.readLong(), null, NO_NAMES, NO_VALUES);
+                case 'F':
+                    return new Value(tag, in.readFloat(), null, NO_NAMES, NO_VALUES);
+                case 'D':
+                    return new Value(tag, in.readDouble(), null, NO_NAMES, NO_VALUES);
+                case 's':
+                case 'c':
+                    return new Value(tag, in.readUTF(), null, NO_NAMES, NO_VALUES);
+                case 'e':
+                    String enumType = in.readUTF();
+                    return new Value(tag, in.readUTF(), enumType, NO_NAMES, NO_VALUES);
+                case '@':
+                case '[':
+                    String type = tag == '@' ? in.readUTF() : null;
+                    Value[] values = new Value[in.readUnsignedShort()];
+                    String[] names = tag == '@' ? new String[values.length] : NO_NAMES;
+                    for (int i = 0; i < values.length; i++) {
+                        if (tag == '@') {
+                            names[i] = in.readUTF();
+                        }
+                        values[i] = read(in);
+                    }
+                    return new Value(tag, type, null, names, values);
+                default:
+                    throw new IOException("Invalid Tag: " + tag);
+            }
+        }
+
+        @Override
+        public String toString() {
+            switch (tag) {
+                case 'e':
+                    return enumType + "." + value;
+                case '@':
+                case '[':
+                    StringBuilder sb = new StringBuilder(tag == '@' ? "@" + value + "(" : "{");
+                    for (int i = 0; i < values.length; i++) {
+                        sb.append(i == 0 ? "" : ", ").append(tag == '@' ? names[i] + "=" : "").append(values[i]);
+                    }
+                    return sb.append(tag == '@' ? ")" : "}").toString();
+                default:
+                    return String.valueOf(value);
+            }
+        }
+    }
+
+    /**
+     * Collects annotations from class files. {@link #add} and the visitors from {@link #visitor} may be used
+     * concurrently; each class is appended under a lock once it has been read.
+     */
+    public static final class Builder {
+
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Object lock = new Object();
+        private String[] strings = new String[1024];
+        private int stringCount;
+        private int[] records = new int[1024];
+        private int recordCount;
+        private int[] elementNames = new int[1024];
+        private Value[] elementValues = new Value[1024];
+        private int elementCount;
+
+        public void add(ByteBuffer classFile) throws IOException {
+            ClassInfo.accept(classFile, visitor(), 0);
+        }
+
+        /**
+         * Returns a visitor that adds the class it walks, e.g. for {@link ClassScanner#accept}.
+         */
+        public ClassVisitor visitor() {
+            return new Collector();
+        }
+
+        /**
+         * Groups the annotations collected so far by type into an immutable index.
+         */
+        public AnnotationIndex build() {
+            synchronized (lock) {
+                int count = recordCount / Collector.RECORD_SIZE;
+                Integer[] order = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Integer.compare(records[a * Collector.RECORD_SIZE],
+                        records[b * Collector.RECORD_SIZE]));
+                Map<Integer, Integer> typeIds = new HashMap<>();
+                int[] typeNames = new int[count];
+                int[] typeStart = new int[count + 1];
+                byte[] kinds = new byte[count];
+                int[] owners = new int[count];
+                int[] names = new int[count];
+                int[] descriptors = new int[count];
+                int[] positions = new int[count];
+                int[] elementStart = new int[count + 1];
+                int[] sortedNames = new int[elementCount];
+                Value[] sortedValues = new Value[elementCount];
+                int elements = 0;
+                for (int annotation = 0; annotation < count; annotation++) {
+                    int record = order[annotation] * Collector.RECORD_SIZE;
+                    int typeName = records[record];
+                    if (!typeIds.containsKey(typeName)) {
+                        typeNames[typeIds.size()] = typeName;
+                        typeIds.put(typeName, typeIds.size());
+                    }
+                    typeStart[typeIds.size()] = annotation + 1;
+                    kinds[annotation] = (byte) records[record + 1];
+                    owners[annotation] = records[record + 2];
+                    names[annotation] = records[record + 3];
+                    descriptors[annotation] = records[record + 4];
+                    positions[annotation] = records[record + 5];
+                    int first = records[record + 6];
+                    int length = records[record + 7];
+                    System.arraycopy(elementNames, first, sortedNames, elements, length);
+                    System.arraycopy(elementValues, first, sortedValues, elements, length);
+                    elements += length;
+                    elementStart[annotation + 1] = elements;
+                }
+                int typeCount = typeIds.size();
+                return new AnnotationIndex(Arrays.copyOf(strings, stringCount), Arrays.copyOf(typeNames, typeCount),
+                        Arrays.copyOf(typeStart, typeCount + 1), kinds, owners, names, descriptors, positions,
+                        elementStart, sortedNames, sortedValues);
+            }
+        }
+
+        private int intern(String string) {
+            Integer id = ids.get(string);
+            if (id == null) {
+                synchronized (lock) {
+                    id = ids.get(string);
+                    if (id == null) {
+                        if (stringCount == strings.length) {
+                            strings = Arrays.copyOf(strings, stringCount * 2);
+                        }
+                        strings[stringCount] = string;
+                        id = stringCount++;
+                        ids.put(string, id);
+                    }
+                }
+            }
+            return id;
+        }
+
+        private void append(int[] local, int localCount, int[] localNames, Value[] localValues, int localElements) {
+            synchronized (lock) {
+                if (recordCount + localCount > records.length) {
+                    records = Arrays.copyOf(records, Math.max(records.length * 2, recordCount + localCount));
+                }
+                if (elementCount + localElements > elementNames.length) {
+                    int capacity = Math.max(elementNames.length * 2, elementCount + localElements);
+                    elementNames = Arrays.copyOf(elementNames, capacity);
+                    elementValues = Arrays.copyOf(elementValues, capacity);
+                }
+                for (int record = 0; record < localCount; record += Collector.RECORD_SIZE) {
+                    local[record + 6] += elementCount;
+                }
+                System.arraycopy(local, 0, records, recordCount, localCount);
+                System.arraycopy(localNames, 0, elementNames, elementCount, localElements);
+                System.arraycopy(localValues, 0, elementValues, elementCount, localElements);
+                recordCount += localCount;
+                elementCount += localElements;
+            }
+        }
+
+        /**
+         * Buffers the annotations of one class as records of type, kind, owner, name, descriptor, position, first
+         * element and element count.
+         */
+        private final class Collector implements ClassVisitor {
+
+            static final int RECORD_SIZE = 8;
+
+            private int[] records = new int[8 * RECORD_SIZE];
+            private int recordCount;
+            private int[] names = new int[16];
+            private Value[] values = new Value[16];
+            private int elementCount;
+            private int owner;
+            private int kind;
+            private int name;
+            private int descriptor;
+
+            @Override
+            public void visitHeader(ClassHeader header) {
+                owner = intern(header.getClassName());
+                kind = CLASS;
+                name = -1;
+                descriptor = -1;
+            }
+
+            @Override
+            public boolean visitField(int accessFlags, String name, String descriptor) {
+                return visitMember(FIELD, name, descriptor);
+            }
+
+            @Override
+            public boolean visitMethod(int accessFlags, String name, String descriptor) {
+                return visitMember(METHOD, name, descriptor);
+            }
+
+            private boolean visitMember(int kind, String name, String descriptor) {
+                this.kind = kind;
+                this.name = intern(name);
+                this.descriptor = intern(descriptor);
+                return true;
+            }
+
+            @Override
+            public boolean visitAttribute(String name, ByteBuffer content) {
+                return name.equals(AttributeInfo.RUNTIME_VISIBLE_ANNOTATIONS)
+                        || name.equals(AttributeInfo.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS)
+                        || name.equals(AttributeInfo.RUNTIME_VISIBLE_TYPE_ANNOTATIONS);
+            }
+
+            @Override
+            public void visitAnnotation(AttributeInfo.Annotation annotation, boolean visible) {
+                add(annotation, kind, -1);
+            }
+
+            @Override
+            public void visitParameterAnnotation(int parameter, AttributeInfo.Annotation annotation,
+                                                 boolean visible) {
+                add(annotation, PARAMETER, parameter);
+            }
+
+            @Override
+            public void visitTypeAnnotation(AttributeInfo.TypeAnnotation annotation, boolean visible) {
+                add(annotation, TYPE_USE, annotation.getTargetType());
+            }
+
+            private void add(AttributeInfo.Annotation annotation, int kind, int position) {
+                int elements = annotation.getElementCount();
+                if (recordCount + RECORD_SIZE > records.length) {
+                    records = Arrays.copyOf(records, records.length * 2);
+                }
+                if (elementCount + elements > names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2, elementCount + elements));
+                    values = Arrays.copyOf(values, names.length);
+                }
+                records[recordCount++] = intern(className(annotation.getType()));
+                records[recordCount++] = kind;
+                records[recordCount++] = owner;
+                records[recordCount++] = name;
+                records[recordCount++] = descriptor;
+                records[recordCount++] = position;
+                records[recordCount++] = elementCount;
+                records[recordCount++] = elements;
+                for (int i = 0; i < elements; i++) {
+                    names[elementCount] = intern(annotation.getElementName(i));
+                    values[elementCount++] = Value.of(annotation.getElementValue(i));
+                }
+            }
+
+            @Override
+            public void visitEnd() {
+                if (recordCount > 0) {
+                    append(records, recordCount, names, values, elementCount);
+                }
+            }
+        }
+    }
+}
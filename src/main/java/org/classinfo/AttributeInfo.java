@@ -1,38 +1,43 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class AttributeInfo {
 
-    private static final String CONSTANT_VALUE = "ConstantValue";
-    private static final String CODE = "Code";
-    private static final String STACK_MAP_TABLE = "StackMapTable";
-    private static final String EXCEPTIONS = "Exceptions";
-    private static final String INNER_CLASSES = "InnerClasses";
-    private static final String ENCLOSING_METHOD = "EnclosingMethod";
-    private static final String SYNTHETIC = "Synthetic";
-    private static final String SIGNATURE = "Signature";
-    private static final String SOURCE_FILE = "SourceFile";
-    private static final String SOURCE_DEBUG_EXTENSION = "SourceDebugExtension";
-    private static final String LINE_NUMBER_TABLE = "LineNumberTable";
-    private static final String LOCAL_VARIABLE_TABLE = "LocalVariableTable";
-    private static final String LOCAL_VARIABLE_TYPE_TABLE = "LocalVariableTypeTable";
-    private static final String DEPRECATED = "Deprecated";
-    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
-    private static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
-    private static final String RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = "RuntimeVisibleParameterAnnotations";
-    private static final String RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS = "RuntimeInvisibleParameterAnnotations";
-    private static final String RUNTIME_VISIBLE_TYPE_ANNOTATIONS = "RuntimeVisibleTypeAnnotations";
-    private static final String RUNTIME_INVISIBLE_TYPE_ANNOTATIONS = "RuntimeInvisibleTypeAnnotations";
-    private static final String ANNOTATION_DEFAULT = "AnnotationDefault";
-    private static final String BOOTSTRAP_METHODS = "BootstrapMethods";
-    private static final String METHOD_PARAMETERS = "MethodParameters";
-    private static final String MODULE = "Module";
-    private static final String MODULE_PACKAGE = "ModulePackages";
-    private static final String MODULE_MAIN_CLASS = "ModuleMainClass";
-    private static final String NEST_HOST = "NestHost";
-    private static final String NEST_MEMBERS = "NestMembers";
+    static final String CONSTANT_VALUE = "ConstantValue";
+    static final String CODE = "Code";
+    static final String STACK_MAP_TABLE = "StackMapTable";
+    static final String EXCEPTIONS = "Exceptions";
+    static final String INNER_CLASSES = "InnerClasses";
+    static final String ENCLOSING_METHOD = "EnclosingMethod";
+    static final String SYNTHETIC = "Synthetic";
+    static final String SIGNATURE = "Signature";
+    static final String SOURCE_FILE = "SourceFile";
+    static final String SOURCE_DEBUG_EXTENSION = "SourceDebugExtension";
+    static final String LINE_NUMBER_TABLE = "LineNumberTable";
+    static final String LOCAL_VARIABLE_TABLE = "LocalVariableTable";
+    static final String LOCAL_VARIABLE_TYPE_TABLE = "LocalVariableTypeTable";
+    static final String DEPRECATED = "Deprecated";
+    static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+    static final String RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = "RuntimeVisibleParameterAnnotations";
+    static final String RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS = "RuntimeInvisibleParameterAnnotations";
+    static final String RUNTIME_VISIBLE_TYPE_ANNOTATIONS = "RuntimeVisibleTypeAnnotations";
+    static final String RUNTIME_INVISIBLE_TYPE_ANNOTATIONS = "RuntimeInvisibleTypeAnnotations";
+    static final String ANNOTATION_DEFAULT = "AnnotationDefault";
+    static final String BOOTSTRAP_METHODS = "BootstrapMethods";
+    static final String METHOD_PARAMETERS = "MethodParameters";
+    static final String MODULE = "Module";
+    static final String MODULE_PACKAGE = "ModulePackages";
+    static final String MODULE_MAIN_CLASS = "ModuleMainClass";
+    static final String NEST_HOST = "NestHost";
+    static final String NEST_MEMBERS = "NestMembers";
+    static final String RECORD = "Record";
+
+    private static final int SKIP_MASK = ClassInfo.SKIP_CODE | ClassInfo.SKIP_DEBUG | ClassInfo.SKIP_FRAMES
+            | ClassInfo.SKIP_ANNOTATIONS;
+    private static final AttributeInfo[] NO_ATTRIBUTES = new AttributeInfo[0];
 
     private int attributeNameIndex;
     private int attributeLength;
@@ -41,7 +46,7 @@ public class AttributeInfo {
     private StackMapFrame[] stackMapTable;
     private int[] exceptions;
     private InnerClass[] innerClasses;
-    private CPInfo[] pool;
+    private ConstantPool pool;
     private int enclosingMethodClassIndex;
     private int enclosingMethodMethodIndex;
     private int signatureIndex;
@@ -51,6 +56,8 @@ public class AttributeInfo {
     private LocalVariableTable[] localVariables;
     private LocalVariableTypeTable[] localVariableTypes;
     private Annotation[] annotations;
+    private Annotation[][] parameterAnnotations;
+    private TypeAnnotation[] typeAnnotations;
     private ElementValue defaultValue;
     private BootstrapMethods[] bootstrapMethods;
     private MethodParameters[] methodParameters;
@@ -60,139 +67,222 @@ public class AttributeInfo {
     private int hostClassIndex;
     private int[] classes;
 
-    AttributeInfo(DataInputStream stream, CPInfo[] pool) throws IOException {
+    AttributeInfo(ByteReader reader, ConstantPool pool, int attributeNameIndex, int attributeLength, int flags)
+            throws IOException {
         this.pool = pool;
-        attributeNameIndex = stream.readUnsignedShort();
-        String attributeName = pool[attributeNameIndex].stringBytes;
-        attributeLength = stream.readInt();
-        switch (attributeName) {
+        this.attributeNameIndex = attributeNameIndex;
+        this.attributeLength = attributeLength;
+        switch (pool.utf8(attributeNameIndex)) {
             case CONSTANT_VALUE:
-                constantValueIndex = stream.readUnsignedShort();
+                constantValueIndex = reader.readUnsignedShort();
                 break;
             case CODE:
-                code = new Code(stream, pool);
+                code = new Code(reader, pool, flags);
                 break;
             case STACK_MAP_TABLE:
-                stackMapTable = new StackMapFrame[stream.readUnsignedShort()];
+                stackMapTable = new StackMapFrame[reader.readUnsignedShort()];
                 for (int i = 0; i < stackMapTable.length; i++) {
-                    stackMapTable[i] = new StackMapFrame(stream);
+                    stackMapTable[i] = new StackMapFrame(reader);
                 }
                 break;
             case EXCEPTIONS:
-                exceptions = new int[stream.readUnsignedShort()];
+                exceptions = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < exceptions.length; i++) {
-                    exceptions[i] = stream.readUnsignedShort();
+                    exceptions[i] = reader.readUnsignedShort();
                 }
                 break;
             case INNER_CLASSES:
-                innerClasses = new InnerClass[stream.readUnsignedShort()];
+                innerClasses = new InnerClass[reader.readUnsignedShort()];
                 for (int i = 0; i < innerClasses.length; i++) {
-                    innerClasses[i] = new InnerClass(stream);
+                    innerClasses[i] = new InnerClass(reader);
                 }
                 break;
             case ENCLOSING_METHOD:
-                enclosingMethodClassIndex = stream.readUnsignedShort();
-                enclosingMethodMethodIndex = stream.readUnsignedShort();
+                enclosingMethodClassIndex = reader.readUnsignedShort();
+                enclosingMethodMethodIndex = reader.readUnsignedShort();
                 break;
             case SYNTHETIC:
                 break;
             case SIGNATURE:
-                signatureIndex = stream.readUnsignedShort();
+                signatureIndex = reader.readUnsignedShort();
                 break;
             case SOURCE_FILE:
-                sourceFileIndex = stream.readUnsignedShort();
+                sourceFileIndex = reader.readUnsignedShort();
                 break;
             case SOURCE_DEBUG_EXTENSION:
-                sourceDebugExtension = stream.readUTF();
+                sourceDebugExtension = reader.readUTF(attributeLength);
                 break;
             case LINE_NUMBER_TABLE:
-                lineNumbers = new LineNumberTable[stream.readUnsignedShort()];
+                lineNumbers = new LineNumberTable[reader.readUnsignedShort()];
                 for (int i = 0; i < lineNumbers.length; i++) {
-                    lineNumbers[i] = new LineNumberTable(stream);
+                    lineNumbers[i] = new LineNumberTable(reader);
                 }
                 break;
             case LOCAL_VARIABLE_TABLE:
-                localVariables = new LocalVariableTable[stream.readUnsignedShort()];
+                localVariables = new LocalVariableTable[reader.readUnsignedShort()];
                 for (int i = 0; i < localVariables.length; i++) {
-                    localVariables[i] = new LocalVariableTable(stream);
+                    localVariables[i] = new LocalVariableTable(reader);
                 }
                 break;
             case LOCAL_VARIABLE_TYPE_TABLE:
-                localVariableTypes = new LocalVariableTypeTable[stream.readUnsignedShort()];
+                localVariableTypes = new LocalVariableTypeTable[reader.readUnsignedShort()];
                 for (int i = 0; i < localVariableTypes.length; i++) {
-                    localVariableTypes[i] = new LocalVariableTypeTable(stream);
+                    localVariableTypes[i] = new LocalVariableTypeTable(reader);
                 }
                 break;
             case DEPRECATED:
                 break;
             case RUNTIME_VISIBLE_ANNOTATIONS:
             case RUNTIME_INVISIBLE_ANNOTATIONS:
+                annotations = new Annotation[reader.readUnsignedShort()];
+                for (int i = 0; i < annotations.length; i++) {
+                    annotations[i] = new Annotation(reader, pool);
+                }
+                break;
             case RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS:
             case RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS:
+                parameterAnnotations = new Annotation[reader.readUnsignedByte()][];
+                for (int i = 0; i < parameterAnnotations.length; i++) {
+                    Annotation[] parameter = new Annotation[reader.readUnsignedShort()];
+                    for (int j = 0; j < parameter.length; j++) {
+                        parameter[j] = new Annotation(reader, pool);
+                    }
+                    parameterAnnotations[i] = parameter;
+                }
+                break;
             case RUNTIME_VISIBLE_TYPE_ANNOTATIONS:
             case RUNTIME_INVISIBLE_TYPE_ANNOTATIONS:
-                annotations = new Annotation[stream.readUnsignedShort()];
-                for (int i = 0; i < annotations.length; i++) {
-                    annotations[i] = new Annotation(stream);
+                typeAnnotations = new TypeAnnotation[reader.readUnsignedShort()];
+                for (int i = 0; i < typeAnnotations.length; i++) {
+                    typeAnnotations[i] = TypeAnnotation.read(reader, pool);
                 }
                 break;
             case ANNOTATION_DEFAULT:
-                defaultValue = new ElementValue(stream);
+                defaultValue = new ElementValue(reader, pool);
                 break;
             case BOOTSTRAP_METHODS:
-                bootstrapMethods = new BootstrapMethods[stream.readUnsignedShort()];
+                bootstrapMethods = new BootstrapMethods[reader.readUnsignedShort()];
                 for (int i = 0; i < bootstrapMethods.length; i++) {
-                    bootstrapMethods[i] = new BootstrapMethods(stream);
+                    bootstrapMethods[i] = new BootstrapMethods(reader);
                 }
                 break;
             case METHOD_PARAMETERS:
-                methodParameters = new MethodParameters[stream.readUnsignedShort()];
+                methodParameters = new MethodParameters[reader.readUnsignedByte()];
                 for (int i = 0; i < methodParameters.length; i++) {
-                    methodParameters[i] = new MethodParameters(stream);
+                    methodParameters[i] = new MethodParameters(reader);
                 }
                 break;
             case MODULE:
-                module = new Module(stream);
+                module = new Module(reader);
                 break;
             case MODULE_PACKAGE:
-                packageIndex = new int[stream.readUnsignedShort()];
+                packageIndex = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < packageIndex.length; i++) {
-                    packageIndex[i] = stream.readUnsignedShort();
+                    packageIndex[i] = reader.readUnsignedShort();
                 }
                 break;
             case MODULE_MAIN_CLASS:
-                mainClassIndex = stream.readUnsignedShort();
+                mainClassIndex = reader.readUnsignedShort();
                 break;
             case NEST_HOST:
-                hostClassIndex = stream.readUnsignedShort();
+                hostClassIndex = reader.readUnsignedShort();
                 break;
             case NEST_MEMBERS:
-                classes = new int[stream.readUnsignedShort()];
+                classes = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < classes.length; i++) {
-                    classes[i] = stream.readUnsignedShort();
+                    classes[i] = reader.readUnsignedShort();
                 }
                 break;
             default:
-                byte[] info = new byte[attributeLength];
-                if (stream.read(info) != attributeLength) {
-                    throw new ClassFormatError("Could not read attribute: " + attributeName);
-                }
+                reader.skip(attributeLength);
                 break;
         }
     }
 
+    static AttributeInfo[] readAttributes(ByteReader reader, ConstantPool pool, int flags) throws IOException {
+        int count = reader.readUnsignedShort();
+        if (count == 0) {
+            return NO_ATTRIBUTES;
+        }
+        AttributeInfo[] attributes = new AttributeInfo[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int attributeNameIndex = reader.readUnsignedShort();
+            int attributeLength = reader.readInt();
+            String name = pool.utf8(attributeNameIndex);
+            if (reader.recorder != null) {
+                reader.recorder.attribute(name, attributeLength);
+            }
+            if (isSkipped(name, flags)) {
+                reader.skip(attributeLength);
+            } else {
+                int start = reader.position();
+                attributes[size++] = new AttributeInfo(reader, pool, attributeNameIndex, attributeLength, flags);
+                if ((flags & ClassInfo.VALIDATE) != 0 && reader.position() - start != attributeLength) {
+                    throw new ClassFormatError("Attribute " + name + " length "
+                            + attributeLength + " does not match its content: " + (reader.position() - start));
+                }
+            }
+        }
+        if (size == count) {
+            return attributes;
+        }
+        return size == 0 ? NO_ATTRIBUTES : Arrays.copyOf(attributes, size);
+    }
+
+    static boolean isSkipped(String attributeName, int flags) {
+        if ((flags & SKIP_MASK) == 0) {
+            return false;
+        }
+        switch (attributeName) {
+            case CODE:
+                return (flags & ClassInfo.SKIP_CODE) != 0;
+            case STACK_MAP_TABLE:
+                return (flags & ClassInfo.SKIP_FRAMES) != 0;
+            case SOURCE_FILE:
+            case SOURCE_DEBUG_EXTENSION:
+            case LINE_NUMBER_TABLE:
+            case LOCAL_VARIABLE_TABLE:
+            case LOCAL_VARIABLE_TYPE_TABLE:
+            case METHOD_PARAMETERS:
+                return (flags & ClassInfo.SKIP_DEBUG) != 0;
+            case RUNTIME_VISIBLE_ANNOTATIONS:
+            case RUNTIME_INVISIBLE_ANNOTATIONS:
+            case RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS:
+            case RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS:
+            case RUNTIME_VISIBLE_TYPE_ANNOTATIONS:
+            case RUNTIME_INVISIBLE_TYPE_ANNOTATIONS:
+            case ANNOTATION_DEFAULT:
+                return (flags & ClassInfo.SKIP_ANNOTATIONS) != 0;
+            default:
+                return false;
+        }
+    }
+
+    Code getCode() {
+        return code;
+    }
+
+    int length() {
+        return attributeLength;
+    }
+
+    StackMapFrame[] getStackMapTable() {
+        return stackMapTable;
+    }
+
     @Override
     public String toString() {
-        return pool[attributeNameIndex].toString();
+        return pool.utf8(attributeNameIndex);
     }
 
     void validate() {
-        if (pool[attributeNameIndex].tag != CPInfo.UTF8) {
+        if (pool.tag(attributeNameIndex) != CPInfo.UTF8) {
             throw new ClassFormatError("invalid attribute-name index");
         }
-        switch (pool[attributeNameIndex].stringBytes) {
+        switch (pool.utf8(attributeNameIndex)) {
             case CONSTANT_VALUE:
-                switch (pool[constantValueIndex].tag) {
+                switch (pool.tag(constantValueIndex)) {
                     case CPInfo.INTEGER:
                     case CPInfo.FLOAT:
                     case CPInfo.LONG:
@@ -213,7 +303,7 @@ public class AttributeInfo {
                 break;
             case EXCEPTIONS:
                 for (int exceptionIndex : exceptions) {
-                    if (pool[exceptionIndex].tag != CPInfo.CLASS) {
+                    if (pool.tag(exceptionIndex) != CPInfo.CLASS) {
                         throw new ClassFormatError("invalid exception class index");
                     }
                 }
@@ -224,10 +314,10 @@ public class AttributeInfo {
                 }
                 break;
             case ENCLOSING_METHOD:
-                if (pool[enclosingMethodClassIndex].tag != CPInfo.CLASS) {
+                if (pool.tag(enclosingMethodClassIndex) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid enclosing method class index");
                 }
-                if (enclosingMethodMethodIndex != 0 && pool[enclosingMethodMethodIndex].tag != CPInfo.NAME_AND_TYPE) {
+                if (enclosingMethodMethodIndex != 0 && pool.tag(enclosingMethodMethodIndex) != CPInfo.NAME_AND_TYPE) {
                     throw new ClassFormatError("invalid enclosing method method index");
                 }
                 break;
@@ -237,12 +327,12 @@ public class AttributeInfo {
                 }
                 break;
             case SIGNATURE:
-                if (pool[signatureIndex].tag != CPInfo.UTF8) {
+                if (pool.tag(signatureIndex) != CPInfo.UTF8) {
                     throw new ClassFormatError("invalid signature");
                 }
                 break;
             case SOURCE_FILE:
-                if (pool[sourceFileIndex].tag != CPInfo.UTF8) {
+                if (pool.tag(sourceFileIndex) != CPInfo.UTF8) {
                     throw new ClassFormatError("invalid source file");
                 }
                 break;
@@ -256,20 +346,20 @@ public class AttributeInfo {
                 break;
             case LOCAL_VARIABLE_TABLE:
                 for (LocalVariableTable table : localVariables) {
-                    if (pool[table.nameIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(table.nameIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("invalid name index for local variable");
                     }
-                    if (pool[table.descriptorIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(table.descriptorIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("invalid descriptor index for local variable");
                     }
                 }
                 break;
             case LOCAL_VARIABLE_TYPE_TABLE:
                 for (LocalVariableTypeTable table : localVariableTypes) {
-                    if (pool[table.nameIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(table.nameIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("invalid name index for local variable type");
                     }
-                    if (pool[table.signatureIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(table.signatureIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("invalid signature index for local variable type");
                     }
                 }
@@ -281,11 +371,21 @@ public class AttributeInfo {
                 break;
             case RUNTIME_VISIBLE_ANNOTATIONS:
             case RUNTIME_INVISIBLE_ANNOTATIONS:
+                for (Annotation annotation : annotations) {
+                    annotation.validate();
+                }
+                break;
             case RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS:
             case RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS:
+                for (Annotation[] parameter : parameterAnnotations) {
+                    for (Annotation annotation : parameter) {
+                        annotation.validate();
+                    }
+                }
+                break;
             case RUNTIME_VISIBLE_TYPE_ANNOTATIONS:
             case RUNTIME_INVISIBLE_TYPE_ANNOTATIONS:
-                for (Annotation annotation : annotations) {
+                for (Annotation annotation : typeAnnotations) {
                     annotation.validate();
                 }
                 break;
@@ -294,11 +394,11 @@ public class AttributeInfo {
                 break;
             case BOOTSTRAP_METHODS:
                 for (BootstrapMethods bootstrapMethod : bootstrapMethods) {
-                    if (pool[bootstrapMethod.bootstrapMethodRef].tag != CPInfo.METHOD_HANDLE) {
+                    if (pool.tag(bootstrapMethod.bootstrapMethodRef) != CPInfo.METHOD_HANDLE) {
                         throw new ClassFormatError("invalid bootstrap method reference");
                     }
                     for (int index : bootstrapMethod.bootstrapArguments) {
-                        if (pool[index] == null) {
+                        if (pool.tag(index) == 0) {
                             throw new ClassFormatError("invalid bootstrap arguments");
                         }
                     }
@@ -306,7 +406,7 @@ public class AttributeInfo {
                 break;
             case METHOD_PARAMETERS:
                 for (MethodParameters methodParameter : methodParameters) {
-                    if (methodParameter.nameIndex != 0 && pool[methodParameter.nameIndex].tag != CPInfo.UTF8) {
+                    if (methodParameter.nameIndex != 0 && pool.tag(methodParameter.nameIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("invalid name index");
                     }
                 }
@@ -316,24 +416,24 @@ public class AttributeInfo {
                 break;
             case MODULE_PACKAGE:
                 for (int index : packageIndex) {
-                    if (pool[index].tag != CPInfo.PACKAGE) {
+                    if (pool.tag(index) != CPInfo.PACKAGE) {
                         throw new ClassFormatError("invalid package index");
                     }
                 }
                 break;
             case MODULE_MAIN_CLASS:
-                if (pool[mainClassIndex].tag != CPInfo.CLASS) {
+                if (pool.tag(mainClassIndex) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid main class index");
                 }
                 break;
             case NEST_HOST:
-                if (pool[hostClassIndex].tag != CPInfo.CLASS) {
+                if (pool.tag(hostClassIndex) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid main class index");
                 }
                 break;
             case NEST_MEMBERS:
                 for (int index : classes) {
-                    if (pool[index].tag != CPInfo.CLASS) {
+                    if (pool.tag(index) != CPInfo.CLASS) {
                         throw new ClassFormatError("invalid nest member class index");
                     }
                 }
@@ -343,55 +443,55 @@ public class AttributeInfo {
 
     class StackMapFrame {
 
-        private static final int SAME_MIN = 0;
-        private static final int SAME_MAX = 63;
-        private static final int SAME_LOCALS_1_STACK_ITEM_MIN = 64;
-        private static final int SAME_LOCALS_1_STACK_ITEM_MAX = 127;
-        private static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
-        private static final int CHOP_MIN = 248;
-        private static final int CHOP_MAX = 250;
-        private static final int SAME_FRAME_EXTENDED = 251;
-        private static final int APPEND_MIN = 252;
-        private static final int APPEND_MAX = 254;
-        private static final int FULL_FRAME = 255;
-
-        private int frameType;
-        private int offsetDelta;
-        private VerificationTypeInfo[] stack;
-        private VerificationTypeInfo[] locals;
-
-        StackMapFrame(DataInputStream stream) throws IOException {
-            frameType = stream.readUnsignedByte();
+        static final int SAME_MIN = 0;
+        static final int SAME_MAX = 63;
+        static final int SAME_LOCALS_1_STACK_ITEM_MIN = 64;
+        static final int SAME_LOCALS_1_STACK_ITEM_MAX = 127;
+        static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+        static final int CHOP_MIN = 248;
+        static final int CHOP_MAX = 250;
+        static final int SAME_FRAME_EXTENDED = 251;
+        static final int APPEND_MIN = 252;
+        static final int APPEND_MAX = 254;
+        static final int FULL_FRAME = 255;
+
+        int frameType;
+        int offsetDelta;
+        VerificationTypeInfo[] stack;
+        VerificationTypeInfo[] locals;
+
+        StackMapFrame(ByteReader reader) throws IOException {
+            frameType = reader.readUnsignedByte();
             if (frameType >= SAME_MIN && frameType <= SAME_MAX) {
                 offsetDelta = frameType;
                 stack = new VerificationTypeInfo[0];
             } else if (frameType >= SAME_LOCALS_1_STACK_ITEM_MIN && frameType <= SAME_LOCALS_1_STACK_ITEM_MAX) {
                 offsetDelta = frameType - 64;
                 stack = new VerificationTypeInfo[1];
-                stack[0] = new VerificationTypeInfo(stream);
+                stack[0] = new VerificationTypeInfo(reader);
             } else if (frameType == SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
-                offsetDelta = stream.readUnsignedShort();
+                offsetDelta = reader.readUnsignedShort();
                 stack = new VerificationTypeInfo[1];
-                stack[0] = new VerificationTypeInfo(stream);
+                stack[0] = new VerificationTypeInfo(reader);
             } else if ((frameType >= CHOP_MIN && frameType <= CHOP_MAX) || frameType == SAME_FRAME_EXTENDED) {
-                offsetDelta = stream.readUnsignedShort();
+                offsetDelta = reader.readUnsignedShort();
                 stack = new VerificationTypeInfo[0];
             } else if (frameType >= APPEND_MIN && frameType <= APPEND_MAX) {
-                offsetDelta = stream.readUnsignedShort();
+                offsetDelta = reader.readUnsignedShort();
                 locals = new VerificationTypeInfo[frameType - APPEND_MIN + 1];
                 for (int i = 0; i < locals.length; i++) {
-                    locals[i] = new VerificationTypeInfo(stream);
+                    locals[i] = new VerificationTypeInfo(reader);
                 }
                 stack = new VerificationTypeInfo[0];
             } else if (frameType == FULL_FRAME) {
-                offsetDelta = stream.readUnsignedShort();
-                locals = new VerificationTypeInfo[stream.readUnsignedShort()];
+                offsetDelta = reader.readUnsignedShort();
+                locals = new VerificationTypeInfo[reader.readUnsignedShort()];
                 for (int i = 0; i < locals.length; i++) {
-                    locals[i] = new VerificationTypeInfo(stream);
+                    locals[i] = new VerificationTypeInfo(reader);
                 }
-                stack = new VerificationTypeInfo[stream.readUnsignedShort()];
+                stack = new VerificationTypeInfo[reader.readUnsignedShort()];
                 for (int i = 0; i < stack.length; i++) {
-                    stack[i] = new VerificationTypeInfo(stream);
+                    stack[i] = new VerificationTypeInfo(reader);
                 }
             } else {
                 throw new ClassFormatError("invalid stack_map_frame");
@@ -410,22 +510,22 @@ public class AttributeInfo {
         }
 
         class VerificationTypeInfo {
-            private static final int ITEM_Top = 0;
-            private static final int ITEM_Integer = 1;
-            private static final int ITEM_Float = 2;
-            private static final int ITEM_Double = 3;
-            private static final int ITEM_Long = 4;
-            private static final int ITEM_Null = 5;
-            private static final int ITEM_UninitializedThis = 6;
-            private static final int ITEM_Object = 7;
-            private static final int ITEM_Uninitialized = 8;
-
-            private int tag;
-            private int cpoolIndex;
-            private int offset;
-
-            VerificationTypeInfo(DataInputStream stream) throws IOException {
-                tag = stream.readUnsignedByte();
+            static final int ITEM_Top = 0;
+            static final int ITEM_Integer = 1;
+            static final int ITEM_Float = 2;
+            static final int ITEM_Double = 3;
+            static final int ITEM_Long = 4;
+            static final int ITEM_Null = 5;
+            static final int ITEM_UninitializedThis = 6;
+            static final int ITEM_Object = 7;
+            static final int ITEM_Uninitialized = 8;
+
+            int tag;
+            int cpoolIndex;
+            int offset;
+
+            VerificationTypeInfo(ByteReader reader) throws IOException {
+                tag = reader.readUnsignedByte();
                 switch (tag) {
                     case ITEM_Top:
                     case ITEM_Integer:
@@ -436,10 +536,10 @@ public class AttributeInfo {
                     case ITEM_UninitializedThis:
                         break;
                     case ITEM_Object:
-                        cpoolIndex = stream.readUnsignedShort();
+                        cpoolIndex = reader.readUnsignedShort();
                         break;
                     case ITEM_Uninitialized:
-                        offset = stream.readUnsignedShort();
+                        offset = reader.readUnsignedShort();
                         break;
                     default:
                         throw new ClassFormatError("invalid verification_type_info");
@@ -447,7 +547,7 @@ public class AttributeInfo {
             }
 
             void validate() {
-                if (tag == ITEM_Object && pool[cpoolIndex].tag != CPInfo.CLASS) {
+                if (tag == ITEM_Object && pool.tag(cpoolIndex) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid class object index");
                 }
             }
@@ -460,21 +560,21 @@ public class AttributeInfo {
         private final int innerNameIndex;
         private final int innerClassAccessFlags;
 
-        InnerClass(DataInputStream stream) throws IOException {
-            innerClassInfoIndex = stream.readUnsignedShort();
-            outerClassInfoIndex = stream.readUnsignedShort();
-            innerNameIndex = stream.readUnsignedShort();
-            innerClassAccessFlags = stream.readUnsignedShort();
+        InnerClass(ByteReader reader) throws IOException {
+            innerClassInfoIndex = reader.readUnsignedShort();
+            outerClassInfoIndex = reader.readUnsignedShort();
+            innerNameIndex = reader.readUnsignedShort();
+            innerClassAccessFlags = reader.readUnsignedShort();
         }
 
         void validate() {
-            if (pool[innerClassInfoIndex].tag != CPInfo.CLASS) {
+            if (pool.tag(innerClassInfoIndex) != CPInfo.CLASS) {
                 throw new ClassFormatError("invalid inner class info index");
             }
-            if (outerClassInfoIndex != 0 && pool[outerClassInfoIndex].tag != CPInfo.CLASS) {
+            if (outerClassInfoIndex != 0 && pool.tag(outerClassInfoIndex) != CPInfo.CLASS) {
                 throw new ClassFormatError("invalid outer class info index");
             }
-            if (innerNameIndex != 0 && pool[innerNameIndex].tag != CPInfo.UTF8) {
+            if (innerNameIndex != 0 && pool.tag(innerNameIndex) != CPInfo.UTF8) {
                 throw new ClassFormatError("invalid inner name index");
             }
         }
@@ -484,9 +584,9 @@ public class AttributeInfo {
         private final int startPc;
         private final int lineNumber;
 
-        LineNumberTable(DataInputStream stream) throws IOException {
-            startPc = stream.readUnsignedShort();
-            lineNumber = stream.readUnsignedShort();
+        LineNumberTable(ByteReader reader) throws IOException {
+            startPc = reader.readUnsignedShort();
+            lineNumber = reader.readUnsignedShort();
         }
     }
 
@@ -497,12 +597,12 @@ public class AttributeInfo {
         private final int descriptorIndex;
         private final int index;
 
-        LocalVariableTable(DataInputStream stream) throws IOException {
-            startPc = stream.readUnsignedShort();
-            length = stream.readUnsignedShort();
-            nameIndex = stream.readUnsignedShort();
-            descriptorIndex = stream.readUnsignedShort();
-            index = stream.readUnsignedShort();
+        LocalVariableTable(ByteReader reader) throws IOException {
+            startPc = reader.readUnsignedShort();
+            length = reader.readUnsignedShort();
+            nameIndex = reader.readUnsignedShort();
+            descriptorIndex = reader.readUnsignedShort();
+            index = reader.readUnsignedShort();
         }
     }
 
@@ -513,36 +613,54 @@ public class AttributeInfo {
         private final int signatureIndex;
         private final int index;
 
-        LocalVariableTypeTable(DataInputStream stream) throws IOException {
-            startPc = stream.readUnsignedShort();
-            length = stream.readUnsignedShort();
-            nameIndex = stream.readUnsignedShort();
-            signatureIndex = stream.readUnsignedShort();
-            index = stream.readUnsignedShort();
+        LocalVariableTypeTable(ByteReader reader) throws IOException {
+            startPc = reader.readUnsignedShort();
+            length = reader.readUnsignedShort();
+            nameIndex = reader.readUnsignedShort();
+            signatureIndex = reader.readUnsignedShort();
+            index = reader.readUnsignedShort();
         }
 
     }
 
-    class Annotation {
+    public static class Annotation {
 
+        private final ConstantPool pool;
         private final int typeIndex;
         private final ElementValuePair elementValuePairs[];
 
-        Annotation(DataInputStream stream) throws IOException {
-            typeIndex = stream.readUnsignedShort();
-            elementValuePairs = new ElementValuePair[stream.readUnsignedShort()];
+        Annotation(ByteReader reader, ConstantPool pool) throws IOException {
+            this.pool = pool;
+            typeIndex = reader.readUnsignedShort();
+            elementValuePairs = new ElementValuePair[reader.readUnsignedShort()];
             for (int i = 0; i < elementValuePairs.length; i++) {
-                elementValuePairs[i] = new ElementValuePair(stream);
+                elementValuePairs[i] = new ElementValuePair(reader, pool);
 
             }
         }
 
+        public String getType() {
+            return pool.utf8(typeIndex);
+        }
+
+        public int getElementCount() {
+            return elementValuePairs.length;
+        }
+
+        public String getElementName(int index) {
+            return pool.utf8(elementValuePairs[index].elementNameIndex);
+        }
+
+        public ElementValue getElementValue(int index) {
+            return elementValuePairs[index].value;
+        }
+
         void validate() {
-            if (pool[typeIndex].tag != CPInfo.UTF8) {
+            if (pool.tag(typeIndex) != CPInfo.UTF8) {
                 throw new ClassFormatError("Invalid annotation type index");
             }
             for (ElementValuePair elementValuePair : elementValuePairs) {
-                if (pool[elementValuePair.elementNameIndex].tag != CPInfo.UTF8) {
+                if (pool.tag(elementValuePair.elementNameIndex) != CPInfo.UTF8) {
                     throw new ClassFormatError("Invalid element name index");
                 }
                 elementValuePair.value.validate();
@@ -550,19 +668,75 @@ public class AttributeInfo {
         }
     }
 
-    class ElementValuePair {
+    public static class TypeAnnotation extends Annotation {
+
+        private final int targetType;
+
+        private TypeAnnotation(int targetType, ByteReader reader, ConstantPool pool) throws IOException {
+            super(reader, pool);
+            this.targetType = targetType;
+        }
+
+        static TypeAnnotation read(ByteReader reader, ConstantPool pool) throws IOException {
+            int targetType = reader.readUnsignedByte();
+            switch (targetType) {
+                case 0x00:
+                case 0x01:
+                case 0x16:
+                    reader.skip(1);
+                    break;
+                case 0x10:
+                case 0x11:
+                case 0x12:
+                case 0x17:
+                case 0x42:
+                case 0x43:
+                case 0x44:
+                case 0x45:
+                case 0x46:
+                    reader.skip(2);
+                    break;
+                case 0x13:
+                case 0x14:
+                case 0x15:
+                    break;
+                case 0x40:
+                case 0x41:
+                    reader.skip(6 * reader.readUnsignedShort());
+                    break;
+                case 0x47:
+                case 0x48:
+                case 0x49:
+                case 0x4A:
+                case 0x4B:
+                    reader.skip(3);
+                    break;
+                default:
+                    throw new ClassFormatError("Invalid type annotation target: " + targetType);
+            }
+            reader.skip(2 * reader.readUnsignedByte());
+            return new TypeAnnotation(targetType, reader, pool);
+        }
+
+        public int getTargetType() {
+            return targetType;
+        }
+    }
+
+    static class ElementValuePair {
 
         private final int elementNameIndex;
         private final ElementValue value;
 
-        ElementValuePair(DataInputStream stream) throws IOException {
-            elementNameIndex = stream.readUnsignedShort();
-            value = new ElementValue(stream);
+        ElementValuePair(ByteReader reader, ConstantPool pool) throws IOException {
+            elementNameIndex = reader.readUnsignedShort();
+            value = new ElementValue(reader, pool);
         }
 
     }
 
-    class ElementValue {
+    public static class ElementValue {
+        private final ConstantPool pool;
         private int tag;
         private int constantValueIndex;
         private int typeNameIndex;
@@ -571,8 +745,9 @@ public class AttributeInfo {
         private Annotation annotationValue;
         private ElementValue[] values;
 
-        ElementValue(DataInputStream stream) throws IOException {
-            tag = stream.readUnsignedByte();
+        ElementValue(ByteReader reader, ConstantPool pool) throws IOException {
+            this.pool = pool;
+            tag = reader.readUnsignedByte();
             switch (tag) {
                 case 'B':
                 case 'C':
@@ -583,22 +758,22 @@ public class AttributeInfo {
                 case 'S':
                 case 'Z':
                 case 's':
-                    constantValueIndex = stream.readUnsignedShort();
+                    constantValueIndex = reader.readUnsignedShort();
                     break;
                 case 'e':
-                    typeNameIndex = stream.readUnsignedShort();
-                    constNameIndex = stream.readUnsignedShort();
+                    typeNameIndex = reader.readUnsignedShort();
+                    constNameIndex = reader.readUnsignedShort();
                     break;
                 case 'c':
-                    classInfoIndex = stream.readUnsignedShort();
+                    classInfoIndex = reader.readUnsignedShort();
                     break;
                 case '@':
-                    annotationValue = new Annotation(stream);
+                    annotationValue = new Annotation(reader, pool);
                     break;
                 case '[':
-                    values = new ElementValue[stream.readUnsignedShort()];
+                    values = new ElementValue[reader.readUnsignedShort()];
                     for (int i = 0; i < values.length; i++) {
-                        values[i] = new ElementValue(stream);
+                        values[i] = new ElementValue(reader, pool);
                     }
                     break;
                 default:
@@ -606,6 +781,47 @@ public class AttributeInfo {
             }
         }
 
+        public char getTag() {
+            return (char) tag;
+        }
+
+        public String getEnumType() {
+            return tag == 'e' ? pool.utf8(typeNameIndex) : null;
+        }
+
+        public Object getValue() {
+            switch (tag) {
+                case 'B':
+                    return (byte) pool.intValue(constantValueIndex);
+                case 'C':
+                    return (char) pool.intValue(constantValueIndex);
+                case 'S':
+                    return (short) pool.intValue(constantValueIndex);
+                case 'Z':
+                    return pool.intValue(constantValueIndex) != 0;
+                case 'I':
+                    return pool.intValue(constantValueIndex);
+                case 'J':
+                    return pool.longValue(constantValueIndex);
+                case 'F':
+                    return pool.floatValue(constantValueIndex);
+                case 'D':
+                    return pool.doubleValue(constantValueIndex);
+                case 's':
+                    return pool.utf8(constantValueIndex);
+                case 'e':
+                    return pool.utf8(constNameIndex);
+                case 'c':
+                    return pool.utf8(classInfoIndex);
+                case '@':
+                    return annotationValue;
+                case '[':
+                    return values.clone();
+                default:
+                    return null;
+            }
+        }
+
         void validate() {
             switch (tag) {
                 case 'B':
@@ -613,40 +829,40 @@ public class AttributeInfo {
                 case 'I':
                 case 'S':
                 case 'Z':
-                    if (pool[constantValueIndex].tag != CPInfo.INTEGER) {
+                    if (pool.tag(constantValueIndex) != CPInfo.INTEGER) {
                         throw new ClassFormatError("Expected Integer for element value tag " + tag);
                     }
                     break;
                 case 'D':
-                    if (pool[constantValueIndex].tag != CPInfo.DOUBLE) {
+                    if (pool.tag(constantValueIndex) != CPInfo.DOUBLE) {
                         throw new ClassFormatError("Unexpected Double value");
                     }
                     break;
                 case 'F':
-                    if (pool[constantValueIndex].tag != CPInfo.FLOAT) {
+                    if (pool.tag(constantValueIndex) != CPInfo.FLOAT) {
                         throw new ClassFormatError("Unexpected Float value");
                     }
                     break;
                 case 'J':
-                    if (pool[constantValueIndex].tag != CPInfo.LONG) {
+                    if (pool.tag(constantValueIndex) != CPInfo.LONG) {
                         throw new ClassFormatError("Unexpected Long value");
                     }
                     break;
                 case 's':
-                    if (pool[constantValueIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(constantValueIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("Unexpected UTF8 value");
                     }
                     break;
                 case 'e':
-                    if (pool[typeNameIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(typeNameIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("Unexpected type name index");
                     }
-                    if (pool[constNameIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(constNameIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("Unexpected const name index");
                     }
                     break;
                 case 'c':
-                    if (pool[classInfoIndex].tag != CPInfo.UTF8) {
+                    if (pool.tag(classInfoIndex) != CPInfo.UTF8) {
                         throw new ClassFormatError("Unexpected class info index");
                     }
                     break;
@@ -667,11 +883,11 @@ public class AttributeInfo {
         private int bootstrapMethodRef;
         private int[] bootstrapArguments;
 
-        BootstrapMethods(DataInputStream stream) throws IOException {
-            bootstrapMethodRef = stream.readUnsignedShort();
-            bootstrapArguments = new int[stream.readUnsignedShort()];
+        BootstrapMethods(ByteReader reader) throws IOException {
+            bootstrapMethodRef = reader.readUnsignedShort();
+            bootstrapArguments = new int[reader.readUnsignedShort()];
             for (int i = 0; i < bootstrapArguments.length; i++) {
-                bootstrapArguments[i] = stream.readUnsignedShort();
+                bootstrapArguments[i] = reader.readUnsignedShort();
             }
         }
     }
@@ -680,9 +896,9 @@ public class AttributeInfo {
         private int nameIndex;
         private int accessFlags;
 
-        MethodParameters(DataInputStream stream) throws IOException {
-            nameIndex = stream.readUnsignedShort();
-            accessFlags = stream.readUnsignedShort();
+        MethodParameters(ByteReader reader) throws IOException {
+            nameIndex = reader.readUnsignedShort();
+            accessFlags = reader.readUnsignedShort();
         }
     }
 
@@ -696,79 +912,79 @@ public class AttributeInfo {
         private int[] usesIndex;
         private Provides[] provides;
 
-        Module(DataInputStream stream) throws IOException {
-            moduleNameIndex = stream.readUnsignedShort();
-            moduleFlags = stream.readUnsignedShort();
-            moduleVersionIndex = stream.readUnsignedShort();
-            requires = new Requires[stream.readUnsignedShort()];
+        Module(ByteReader reader) throws IOException {
+            moduleNameIndex = reader.readUnsignedShort();
+            moduleFlags = reader.readUnsignedShort();
+            moduleVersionIndex = reader.readUnsignedShort();
+            requires = new Requires[reader.readUnsignedShort()];
             for (int i = 0; i < requires.length; i++) {
-                requires[i] =new Requires(stream);
+                requires[i] =new Requires(reader);
             }
-            exports = new Exports[stream.readUnsignedShort()];
+            exports = new Exports[reader.readUnsignedShort()];
             for (int i = 0; i < exports.length; i++) {
-                exports[i] = new Exports(stream);
+                exports[i] = new Exports(reader);
 
             }
-            opens = new Opens[stream.readUnsignedShort()];
+            opens = new Opens[reader.readUnsignedShort()];
             for (int i = 0; i < opens.length; i++) {
-                opens[i] = new Opens(stream);
+                opens[i] = new Opens(reader);
             }
-            usesIndex = new int[stream.readUnsignedShort()];
+            usesIndex = new int[reader.readUnsignedShort()];
             for (int i = 0; i < usesIndex.length; i++) {
-                usesIndex[i] = stream.readUnsignedShort();
+                usesIndex[i] = reader.readUnsignedShort();
             }
-            provides = new Provides[stream.readUnsignedShort()];
+            provides = new Provides[reader.readUnsignedShort()];
             for (int i = 0; i < provides.length; i++) {
-                provides[i] = new Provides(stream);
+                provides[i] = new Provides(reader);
             }
         }
 
         void validate() {
-            if (pool[moduleNameIndex].tag != CPInfo.MODULE) {
+            if (pool.tag(moduleNameIndex) != CPInfo.MODULE) {
                 throw new ClassFormatError("invalid module name index");
             }
-            if (moduleVersionIndex != 0 && pool[moduleVersionIndex].tag != CPInfo.UTF8) {
+            if (moduleVersionIndex != 0 && pool.tag(moduleVersionIndex) != CPInfo.UTF8) {
                 throw new ClassFormatError("invalid module version index");
             }
             for (Requires require : requires) {
-                if (pool[require.requiresIndex].tag != CPInfo.MODULE) {
+                if (pool.tag(require.requiresIndex) != CPInfo.MODULE) {
                     throw new ClassFormatError("invalid requires index");
                 }
-                if (require.requiresVersionIndex != 0 && pool[require.requiresVersionIndex].tag != CPInfo.UTF8) {
+                if (require.requiresVersionIndex != 0 && pool.tag(require.requiresVersionIndex) != CPInfo.UTF8) {
                     throw new ClassFormatError("invalid requires version index");
                 }
             }
             for (Exports export : exports) {
-                if (pool[export.exportsIndex].tag != CPInfo.PACKAGE) {
+                if (pool.tag(export.exportsIndex) != CPInfo.PACKAGE) {
                     throw new ClassFormatError("invalid exports index");
                 }
                 for (int index : export.exportsToIndex) {
-                    if (pool[index].tag != CPInfo.MODULE) {
+                    if (pool.tag(index) != CPInfo.MODULE) {
                         throw new ClassFormatError("invalid exports to index");
                     }
                 }
             }
             for (Opens open : opens) {
-                if (pool[open.opensIndex].tag != CPInfo.PACKAGE) {
+                if (pool.tag(open.opensIndex) != CPInfo.PACKAGE) {
                     throw new ClassFormatError("invalid opens index");
                 }
                 for (int index : open.opensToIndex) {
-                    if (pool[index].tag != CPInfo.MODULE) {
+                    if (pool.tag(index) != CPInfo.MODULE) {
                         throw new ClassFormatError("invalid opens to index");
                     }
                 }
             }
             for (int uses : usesIndex) {
-                if (pool[uses].tag != CPInfo.CLASS) {
+                if (pool.tag(uses) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid uses index");
                 }
             }
             for (Provides provide : provides) {
-                if (pool[provide.providesIndex].tag != CPInfo.CLASS) {
+                if (pool.tag(provide.providesIndex) != CPInfo.CLASS) {
                     throw new ClassFormatError("invalid provides index");
                 }
                 for (int index : provide.providesWithIndex) {
-                    if (pool[index].tag != CPInfo.CLASS) {
+                    if (pool.tag(index) != CPInfo.CLASS) {
                         throw new ClassFormatError("invalid provides with index");
                     }
                 }
@@ -780,10 +996,10 @@ public class AttributeInfo {
             private int requiresFlags;
             private int requiresVersionIndex;
 
-            Requires(DataInputStream stream) throws IOException {
-                requiresIndex = stream.readUnsignedShort();
-                requiresFlags = stream.readUnsignedShort();
-                requiresVersionIndex = stream.readUnsignedShort();
+            Requires(ByteReader reader) throws IOException {
+                requiresIndex = reader.readUnsignedShort();
+                requiresFlags = reader.readUnsignedShort();
+                requiresVersionIndex = reader.readUnsignedShort();
             }
         }
 
@@ -792,12 +1008,12 @@ public class AttributeInfo {
             private int exportsFlags;
             private int[] exportsToIndex;
 
-            Exports(DataInputStream stream) throws IOException {
-                exportsIndex = stream.readUnsignedShort();
-                exportsFlags = stream.readUnsignedShort();
-                exportsToIndex = new int[stream.readUnsignedShort()];
+            Exports(ByteReader reader) throws IOException {
+                exportsIndex = reader.readUnsignedShort();
+                exportsFlags = reader.readUnsignedShort();
+                exportsToIndex = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < exportsToIndex.length; i++) {
-                    exportsToIndex[i] = stream.readUnsignedShort();
+                    exportsToIndex[i] = reader.readUnsignedShort();
                 }
             }
         }
@@ -807,12 +1023,12 @@ public class AttributeInfo {
             private int opensFlags;
             private int[] opensToIndex;
 
-            Opens(DataInputStream stream) throws IOException {
-                opensIndex = stream.readUnsignedShort();
-                opensFlags = stream.readUnsignedShort();
-                opensToIndex = new int[stream.readUnsignedShort()];
+            Opens(ByteReader reader) throws IOException {
+                opensIndex = reader.readUnsignedShort();
+                opensFlags = reader.readUnsignedShort();
+                opensToIndex = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < opensToIndex.length; i++) {
-                    opensToIndex[i] = stream.readUnsignedShort();
+                    opensToIndex[i] = reader.readUnsignedShort();
                 }
             }
         }
@@ -821,11 +1037,11 @@ public class AttributeInfo {
             private int providesIndex;
             private int[] providesWithIndex;
 
-            Provides(DataInputStream stream) throws IOException {
-                providesIndex = stream.readUnsignedShort();
-                providesWithIndex = new int[stream.readUnsignedShort()];
+            Provides(ByteReader reader) throws IOException {
+                providesIndex = reader.readUnsignedShort();
+                providesWithIndex = new int[reader.readUnsignedShort()];
                 for (int i = 0; i < providesWithIndex.length; i++) {
-                    providesWithIndex[i] = stream.readUnsignedShort();
+                    providesWithIndex[i] = reader.readUnsignedShort();
                 }
             }
         }
@@ -0,0 +1,180 @@
+package org.classinfo;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+final class ByteReader {
+
+    private ByteBuffer source;
+    private ByteBuffer buffer;
+    private int limit;
+    private int position;
+    ParseMetrics.Recorder recorder;
+
+    ByteReader(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Starts reading {@code source} from its position to its limit. The duplicate is kept when {@code source} is
+     * the buffer read last, so a reader over one reused buffer allocates nothing.
+     */
+    void reset(ByteBuffer source) {
+        if (source != this.source) {
+            this.source = source;
+            buffer = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+        buffer.limit(source.limit()).position(source.position());
+        position = source.position();
+        limit = source.limit();
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int position() {
+        return position;
+    }
+
+    void position(int position) throws IOException {
+        if (position < 0 || position > limit) {
+            throw new EOFException();
+        }
+        this.position = position;
+    }
+
+    boolean hasRemaining() {
+        return position < limit;
+    }
+
+    private int advance(int length) throws IOException {
+        int offset = position;
+        if (length > limit - offset) {
+            throw new EOFException();
+        }
+        position = offset + length;
+        return offset;
+    }
+
+    int readUnsignedByte() throws IOException {
+        return buffer.get(advance(1)) & 0xFF;
+    }
+
+    int readUnsignedShort() throws IOException {
+        return buffer.getShort(advance(2)) & 0xFFFF;
+    }
+
+    int readInt() throws IOException {
+        return buffer.getInt(advance(4));
+    }
+
+    float readFloat() throws IOException {
+        return buffer.getFloat(advance(4));
+    }
+
+    long readLong() throws IOException {
+        return buffer.getLong(advance(8));
+    }
+
+    double readDouble() throws IOException {
+        return buffer.getDouble(advance(8));
+    }
+
+    void readFully(byte[] bytes) throws IOException {
+        int offset = advance(bytes.length);
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, bytes, 0, bytes.length);
+        } else {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+        }
+    }
+
+    void skip(int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException();
+        }
+        advance(length);
+    }
+
+    String readUTF() throws IOException {
+        return readUTF(readUnsignedShort());
+    }
+
+    String readUTF(int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException();
+        }
+        return decodeUTF(buffer, advance(length), length);
+    }
+
+    /**
+     * Decodes {@code length} bytes of modified UTF-8. Pure ASCII input, by far the common case in class files,
+     * is copied straight into a Latin-1 string.
+     */
+    static String decodeUTF(ByteBuffer buffer, int offset, int length) throws IOException {
+        byte[] bytes;
+        int start;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            start = buffer.arrayOffset() + offset;
+        } else {
+            bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+            start = 0;
+        }
+        int end = start + length;
+        int i = start;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            return new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[length];
+        int count = 0;
+        for (int j = start; j < i; j++) {
+            chars[count++] = (char) bytes[j];
+        }
+        int base = offset - start;
+        while (i < end) {
+            int c = bytes[i] & 0xFF;
+            if (c < 0x80) {
+                i++;
+                chars[count++] = (char) c;
+            } else if ((c & 0xE0) == 0xC0) {
+                if (i + 2 > end) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                int c2 = bytes[i + 1];
+                if ((c2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (base + i + 1));
+                }
+                chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                i += 2;
+            } else if ((c & 0xF0) == 0xE0) {
+                if (i + 3 > end) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                int c2 = bytes[i + 1];
+                int c3 = bytes[i + 2];
+                if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (base + i + 2));
+                }
+                chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                i += 3;
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + (base + i));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
@@ -0,0 +1,372 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Corpus-wide bytecode statistics: an opcode histogram, distributions of code length, max stack and max locals,
+ * constant pool tag counts, and attribute counts and sizes by name. {@link #add} may be called concurrently, e.g.
+ * from a {@link ClassScanner} callback. Each thread counts into its own accumulator, and every read merges them,
+ * so results should be read once the adds are done. Attributes skipped while parsing are not seen; parse without
+ * the {@code SKIP_*} flags for complete attribute figures.
+ */
+public final class BytecodeStatistics {
+
+    public static final int CODE_LENGTH = 0;
+    public static final int MAX_STACK = 1;
+    public static final int MAX_LOCALS = 2;
+    /**
+     * Distributions have power of two buckets: bucket 0 counts zeros and bucket {@code i} values from
+     * {@code 2^(i-1)} to {@code 2^i - 1}, up to the u2 limit of all three.
+     */
+    public static final int BUCKETS = 17;
+
+    private static final String[] DISTRIBUTION_NAMES = {"codeLength", "maxStack", "maxLocals"};
+    private static final String[] TAG_NAMES = {null, "Utf8", null, "Integer", "Float", "Long", "Double", "Class",
+            "String", "Fieldref", "Methodref", "InterfaceMethodref", "NameAndType", null, null, "MethodHandle",
+            "MethodType", "Dynamic", "InvokeDynamic", "Module", "Package"};
+
+    private final Queue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Accumulator> accumulator = ThreadLocal.withInitial(() -> {
+        Accumulator accumulator = new Accumulator();
+        accumulators.add(accumulator);
+        return accumulator;
+    });
+
+    public void add(ClassInfo classInfo) {
+        accumulator.get().add(classInfo);
+    }
+
+    public long getClassCount() {
+        return merge().classes;
+    }
+
+    public long getFieldCount() {
+        return merge().fields;
+    }
+
+    public long getMethodCount() {
+        return merge().methods;
+    }
+
+    /**
+     * Returns the total size of the class files added.
+     */
+    public long getClassBytes() {
+        return merge().classBytes;
+    }
+
+    /**
+     * Returns how often {@code opcode} occurs. A {@code wide} instruction counts both as {@code wide} and as the
+     * instruction it widens.
+     */
+    public long getOpcodeCount(int opcode) {
+        return merge().opcodes[opcode];
+    }
+
+    public long getInstructionCount() {
+        long[] opcodes = merge().opcodes;
+        long count = 0;
+        for (long opcodeCount : opcodes) {
+            count += opcodeCount;
+        }
+        return count - opcodes[Opcodes.WIDE];
+    }
+
+    /**
+     * Returns how many {@code Code} attributes have a value in {@code bucket} of {@code distribution}, one of
+     * {@link #CODE_LENGTH}, {@link #MAX_STACK} and {@link #MAX_LOCALS}.
+     */
+    public long getBucketCount(int distribution, int bucket) {
+        return merge().buckets[distribution][bucket];
+    }
+
+    public long getTotal(int distribution) {
+        return merge().totals[distribution];
+    }
+
+    public long getMax(int distribution) {
+        return merge().max[distribution];
+    }
+
+    public long getCodeCount() {
+        return merge().codes;
+    }
+
+    /**
+     * Returns the number of constant pool entries with {@code tag}; the unusable slot after a long or a double is
+     * not counted.
+     */
+    public long getTagCount(int tag) {
+        return merge().tags[tag];
+    }
+
+    public long getAttributeCount(String name) {
+        long[] counters = merge().attributes.get(name);
+        return counters == null ? 0 : counters[0];
+    }
+
+    /**
+     * Returns the total length of the attributes named {@code name}. A {@code Code} attribute includes its nested
+     * attributes.
+     */
+    public long getAttributeBytes(String name) {
+        long[] counters = merge().attributes.get(name);
+        return counters == null ? 0 : counters[1];
+    }
+
+    /**
+     * Returns the distribution bucket of {@code value}.
+     */
+    public static int bucket(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Writes all statistics as one JSON object. Zero opcode and tag counts are left out.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        Accumulator merged = merge();
+        out.append("{\n");
+        out.append("  \"classes\": ").append(Long.toString(merged.classes)).append(",\n");
+        out.append("  \"classBytes\": ").append(Long.toString(merged.classBytes)).append(",\n");
+        out.append("  \"fields\": ").append(Long.toString(merged.fields)).append(",\n");
+        out.append("  \"methods\": ").append(Long.toString(merged.methods)).append(",\n");
+        out.append("  \"codes\": ").append(Long.toString(merged.codes)).append(",\n");
+        out.append("  \"opcodes\": {");
+        String separator = "\n";
+        for (int opcode = 0; opcode < merged.opcodes.length; opcode++) {
+            if (merged.opcodes[opcode] != 0) {
+                out.append(separator).append("    ").append(quote(Opcodes.name(opcode))).append(": ")
+                        .append(Long.toString(merged.opcodes[opcode]));
+                separator = ",\n";
+            }
+        }
+        out.append("\n  },\n");
+        for (int distribution = 0; distribution < DISTRIBUTION_NAMES.length; distribution++) {
+            out.append("  ").append(quote(DISTRIBUTION_NAMES[distribution])).append(": {\"total\": ")
+                    .append(Long.toString(merged.totals[distribution])).append(", \"max\": ")
+                    .append(Long.toString(merged.max[distribution])).append(", \"buckets\": {");
+            separator = "";
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                if (merged.buckets[distribution][bucket] != 0) {
+                    out.append(separator).append(quote(bucketName(bucket))).append(": ")
+                            .append(Long.toString(merged.buckets[distribution][bucket]));
+                    separator = ", ";
+                }
+            }
+            out.append("}},\n");
+        }
+        out.append("  \"constantPool\": {");
+        separator = "\n";
+        for (int tag = 0; tag < merged.tags.length; tag++) {
+            if (merged.tags[tag] != 0) {
+                out.append(separator).append("    ").append(quote(tagName(tag))).append(": ")
+                        .append(Long.toString(merged.tags[tag]));
+                separator = ",\n";
+            }
+        }
+        out.append("\n  },\n");
+        out.append("  \"attributes\": {");
+        separator = "\n";
+        for (Map.Entry<String, long[]> entry : new TreeMap<>(merged.attributes).entrySet()) {
+            out.append(separator).append("    ").append(quote(entry.getKey())).append(": {\"count\": ")
+                    .append(Long.toString(entry.getValue()[0])).append(", \"bytes\": ")
+                    .append(Long.toString(entry.getValue()[1])).append('}');
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+    }
+
+    /**
+     * Writes all statistics as {@code section,name,value} rows under a header row.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        Accumulator merged = merge();
+        out.append("section,name,value\n");
+        row(out, "summary", "classes", merged.classes);
+        row(out, "summary", "classBytes", merged.classBytes);
+        row(out, "summary", "fields", merged.fields);
+        row(out, "summary", "methods", merged.methods);
+        row(out, "summary", "codes", merged.codes);
+        for (int opcode = 0; opcode < merged.opcodes.length; opcode++) {
+            if (merged.opcodes[opcode] != 0) {
+                row(out, "opcode", Opcodes.name(opcode), merged.opcodes[opcode]);
+            }
+        }
+        for (int distribution = 0; distribution < DISTRIBUTION_NAMES.length; distribution++) {
+            String section = DISTRIBUTION_NAMES[distribution];
+            row(out, section, "total", merged.totals[distribution]);
+            row(out, section, "max", merged.max[distribution]);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                if (merged.buckets[distribution][bucket] != 0) {
+                    row(out, section, bucketName(bucket), merged.buckets[distribution][bucket]);
+                }
+            }
+        }
+        for (int tag = 0; tag < merged.tags.length; tag++) {
+            if (merged.tags[tag] != 0) {
+                row(out, "constantPool", tagName(tag), merged.tags[tag]);
+            }
+        }
+        for (Map.Entry<String, long[]> entry : new TreeMap<>(merged.attributes).entrySet()) {
+            row(out, "attributeCount", entry.getKey(), entry.getValue()[0]);
+            row(out, "attributeBytes", entry.getKey(), entry.getValue()[1]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeJson(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    private Accumulator merge() {
+        Accumulator merged = new Accumulator();
+        for (Accumulator accumulator : accumulators) {
+            merged.merge(accumulator);
+        }
+        return merged;
+    }
+
+    private static void row(Appendable out, String section, String name, long value) throws IOException {
+        out.append(section).append(',');
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0) {
+            out.append('"').append(name.replace("\"", "\"\"")).append('"');
+        } else {
+            out.append(name);
+        }
+        out.append(',').append(Long.toString(value)).append('\n');
+    }
+
+    private static String quote(String string) {
+        StringBuilder sb = new StringBuilder(string.length() + 2).append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String bucketName(int bucket) {
+        if (bucket <= 1) {
+            return Integer.toString(bucket);
+        }
+        return (1 << bucket - 1) + "-" + ((1 << bucket) - 1);
+    }
+
+    private static String tagName(int tag) {
+        return tag < TAG_NAMES.length && TAG_NAMES[tag] != null ? TAG_NAMES[tag] : "<" + tag + '>';
+    }
+
+    private static final class Accumulator {
+
+        final long[] opcodes = new long[256];
+        final long[][] buckets = new long[DISTRIBUTION_NAMES.length][BUCKETS];
+        final long[] totals = new long[DISTRIBUTION_NAMES.length];
+        final long[] max = new long[DISTRIBUTION_NAMES.length];
+        final long[] tags = new long[TAG_NAMES.length];
+        final Map<String, long[]> attributes = new HashMap<>();
+        long classes;
+        long classBytes;
+        long fields;
+        long methods;
+        long codes;
+        private final InstructionCursor cursor = new InstructionCursor();
+
+        void add(ClassInfo classInfo) {
+            classes++;
+            classBytes += classInfo.end() - classInfo.start();
+            ConstantPool pool = classInfo.getConstantPool();
+            for (int i = 1; i < pool.size(); i++) {
+                int tag = pool.tag(i);
+                if (tag > 0 && tag < tags.length) {
+                    tags[tag]++;
+                }
+            }
+            addAttributes(classInfo.attributes());
+            for (AbstractInfo field : classInfo.fields()) {
+                fields++;
+                addAttributes(field.attributes);
+            }
+            for (MethodInfo method : classInfo.methods()) {
+                methods++;
+                addAttributes(method.attributes);
+                Code code = method.getCode();
+                if (code != null) {
+                    addCode(code);
+                }
+            }
+        }
+
+        private void addCode(Code code) {
+            codes++;
+            addValue(CODE_LENGTH, code.getCodeLength());
+            addValue(MAX_STACK, code.getMaxStack());
+            addValue(MAX_LOCALS, code.getMaxLocals());
+            addAttributes(code.attributes());
+            cursor.reset(code);
+            while (cursor.next()) {
+                opcodes[cursor.opcode()]++;
+                if (cursor.isWide()) {
+                    opcodes[Opcodes.WIDE]++;
+                }
+            }
+        }
+
+        private void addValue(int distribution, int value) {
+            buckets[distribution][bucket(value)]++;
+            totals[distribution] += value;
+            max[distribution] = Math.max(max[distribution], value);
+        }
+
+        private void addAttributes(AttributeInfo[] attributeInfos) {
+            for (AttributeInfo attribute : attributeInfos) {
+                long[] counters = attributes.computeIfAbsent(attribute.toString(), name -> new long[2]);
+                counters[0]++;
+                counters[1] += attribute.length();
+            }
+        }
+
+        void merge(Accumulator other) {
+            classes += other.classes;
+            classBytes += other.classBytes;
+            fields += other.fields;
+            methods += other.methods;
+            codes += other.codes;
+            for (int i = 0; i < opcodes.length; i++) {
+                opcodes[i] += other.opcodes[i];
+            }
+            for (int distribution = 0; distribution < buckets.length; distribution++) {
+                for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                    buckets[distribution][bucket] += other.buckets[distribution][bucket];
+                }
+                totals[distribution] += other.totals[distribution];
+                max[distribution] = Math.max(max[distribution], other.max[distribution]);
+            }
+            for (int tag = 0; tag < tags.length; tag++) {
+                tags[tag] += other.tags[tag];
+            }
+            other.attributes.forEach((name, counters) -> {
+                long[] merged = attributes.computeIfAbsent(name, key -> new long[2]);
+                merged[0] += counters[0];
+                merged[1] += counters[1];
+            });
+        }
+    }
+}
@@ -1,27 +1,26 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
-public class CPInfo {
+public final class CPInfo {
 
-    static final int UTF8 = 1;
-    static final int INTEGER = 3;
-    static final int FLOAT = 4;
-    static final int LONG = 5;
-    static final int DOUBLE = 6;
-    static final int CLASS = 7;
-    static final int STRING = 8;
-    static final int FIELD_REF = 9;
-    static final int METHOD_REF = 10;
-    static final int INTERFACE_METHOD_REF = 11;
-    static final int NAME_AND_TYPE = 12;
-    static final int METHOD_HANDLE = 15;
-    static final int METHOD_TYPE = 16;
-    static final int DYNAMIC = 17;
-    static final int INVOKE_DYNAMIC = 18;
-    static final int MODULE = 19;
-    static final int PACKAGE = 20;
+    public static final int UTF8 = 1;
+    public static final int INTEGER = 3;
+    public static final int FLOAT = 4;
+    public static final int LONG = 5;
+    public static final int DOUBLE = 6;
+    public static final int CLASS = 7;
+    public static final int STRING = 8;
+    public static final int FIELD_REF = 9;
+    public static final int METHOD_REF = 10;
+    public static final int INTERFACE_METHOD_REF = 11;
+    public static final int NAME_AND_TYPE = 12;
+    public static final int METHOD_HANDLE = 15;
+    public static final int METHOD_TYPE = 16;
+    public static final int DYNAMIC = 17;
+    public static final int INVOKE_DYNAMIC = 18;
+    public static final int MODULE = 19;
+    public static final int PACKAGE = 20;
 
     private static final int REF_getField = 1;
     private static final int REF_getStatic = 2;
@@ -33,98 +32,84 @@ public class CPInfo {
     private static final int REF_newInvokeSpecial = 8;
     private static final int REF_invokeInterface = 9;
 
-    final int tag;
-
-    int classIndex;
-    int nameAndTypeIndex;
-    int nameIndex;
-    int descriptorIndex;
-    int stringIndex;
-    int referenceIndex;
-    int bootstrapMethodAttrIndex;
-
-    int intBytes;
-    float floatBytes;
-    long longBytes;
-    double doubleBytes;
-    String stringBytes;
-    int referenceKind;
+    private CPInfo() {
+    }
 
-    private CPInfo[] pool;
+    static ConstantPool readConstantPool(ByteReader reader, boolean lazy) throws IOException {
+        return readConstantPool(reader, lazy, null);
+    }
 
-    private CPInfo(DataInputStream stream, CPInfo[] pool) throws IOException {
-        this.pool = pool;
-        tag = stream.readUnsignedByte();
-        switch (tag) {
-            case UTF8:
-                stringBytes = stream.readUTF();
-                break;
-            case INTEGER:
-                intBytes = stream.readInt();
-                break;
-            case FLOAT:
-                floatBytes = stream.readFloat();
-                break;
-            case LONG:
-                longBytes = stream.readLong();
-                break;
-            case DOUBLE:
-                doubleBytes = stream.readDouble();
-                break;
-            case STRING:
-                stringIndex = stream.readUnsignedShort();
-                break;
-            case CLASS:
-            case MODULE:
-            case PACKAGE:
-                nameIndex = stream.readUnsignedShort();
-                break;
-            case FIELD_REF:
-            case METHOD_REF:
-            case INTERFACE_METHOD_REF:
-                classIndex = stream.readUnsignedShort();
-                nameAndTypeIndex = stream.readUnsignedShort();
-                break;
-            case NAME_AND_TYPE:
-                nameIndex = stream.readUnsignedShort();
-                descriptorIndex = stream.readUnsignedShort();
-                break;
-            case METHOD_HANDLE:
-                referenceKind = stream.readUnsignedByte();
-                referenceIndex = stream.readUnsignedShort();
-                break;
-            case METHOD_TYPE:
-                descriptorIndex = stream.readUnsignedShort();
-                break;
-            case DYNAMIC:
-            case INVOKE_DYNAMIC:
-                bootstrapMethodAttrIndex = stream.readUnsignedShort();
-                nameAndTypeIndex = stream.readUnsignedShort();
-                break;
-            default:
-                throw new IOException("Invalid Tag: " + tag);
+    static ConstantPool readConstantPool(ByteReader reader, boolean lazy, SymbolTable symbols) throws IOException {
+        int count = reader.readUnsignedShort();
+        byte[] tags = new byte[count];
+        int[] values = new int[count];
+        readEntries(reader, tags, values, count);
+        ConstantPool pool = new ConstantPool(reader.buffer(), tags, values, symbols);
+        if (!lazy) {
+            pool.decodeAll();
         }
+        return pool;
     }
 
-    static CPInfo[] readConstantPool(DataInputStream stream) throws IOException {
-        int count = stream.readUnsignedShort();
-        CPInfo[] pool = new CPInfo[count];
+    /**
+     * Reads the constant pool into {@code pool} instead of a new one. The pool stays lazy.
+     */
+    static void readConstantPool(ByteReader reader, ConstantPool pool) throws IOException {
+        int count = reader.readUnsignedShort();
+        pool.reset(reader.buffer(), count);
+        readEntries(reader, pool.tags, pool.values, count);
+    }
+
+    private static void readEntries(ByteReader reader, byte[] tags, int[] values, int count) throws IOException {
         for (int i = 1; i < count; i++) {
-            pool[i] = new CPInfo(stream, pool);
-            int tag = pool[i].tag;
-            if (tag == LONG || tag == DOUBLE) {
-                i++;
+            int tag = reader.readUnsignedByte();
+            tags[i] = (byte) tag;
+            switch (tag) {
+                case UTF8:
+                    values[i] = reader.position();
+                    reader.skip(reader.readUnsignedShort());
+                    break;
+                case INTEGER:
+                case FLOAT:
+                    values[i] = reader.readInt();
+                    break;
+                case LONG:
+                case DOUBLE:
+                    if (i + 1 == count) {
+                        throw new ClassFormatError("Invalid constant pool entry #" + i);
+                    }
+                    values[i] = reader.readInt();
+                    values[++i] = reader.readInt();
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    values[i] = reader.readUnsignedShort();
+                    break;
+                case METHOD_HANDLE:
+                    values[i] = reader.readUnsignedByte() << 16 | reader.readUnsignedShort();
+                    break;
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    values[i] = reader.readUnsignedShort() << 16 | reader.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException("Invalid Tag: " + tag);
             }
         }
-        return  pool;
     }
 
-    static void validate(CPInfo[] pool, int majorVersion) {
-        for (int i = 1; i < pool.length; i++) {
-            CPInfo cp = pool[i];
-            switch (cp.tag) {
+    static void validate(ConstantPool pool, int majorVersion) {
+        for (int i = 1; i < pool.size(); i++) {
+            switch (pool.tag(i)) {
                 case UTF8:
-                    if(cp.stringBytes == null) {
+                    if (!pool.isDecodable(i)) {
                         throw new ClassFormatError("invalid stringBytes");
                     }
                     break;
@@ -133,46 +118,46 @@ public class CPInfo {
                     i++;
                     break;
                 case STRING:
-                    if(pool[cp.stringIndex].tag != UTF8) {
+                    if (pool.tag(pool.stringIndex(i)) != UTF8) {
                         throw new ClassFormatError("invalid stringIndex");
                     }
                     break;
                 case CLASS:
                 case MODULE:
                 case PACKAGE:
-                    if(pool[cp.nameIndex].tag != UTF8) {
+                    if (pool.tag(pool.nameIndex(i)) != UTF8) {
                         throw new ClassFormatError("invalid nameIndex");
                     }
                     break;
                 case FIELD_REF:
                 case METHOD_REF:
                 case INTERFACE_METHOD_REF:
-                    if(pool[cp.classIndex].tag != CLASS) {
+                    if (pool.tag(pool.classIndex(i)) != CLASS) {
                         throw new ClassFormatError("invalid classIndex");
                     }
-                    if(pool[cp.nameAndTypeIndex].tag != NAME_AND_TYPE) {
+                    if (pool.tag(pool.nameAndTypeIndex(i)) != NAME_AND_TYPE) {
                         throw new ClassFormatError("invalid nameAndTypeIndex");
                     }
                     break;
                 case NAME_AND_TYPE:
-                    if(pool[cp.nameIndex].tag != UTF8) {
+                    if (pool.tag(pool.nameIndex(i)) != UTF8) {
                         throw new ClassFormatError("invalid nameIndex");
                     }
-                    if(pool[cp.descriptorIndex].tag != UTF8) {
+                    if (pool.tag(pool.descriptorIndex(i)) != UTF8) {
                         throw new ClassFormatError("invalid descriptorIndex");
                     }
                     break;
                 case METHOD_HANDLE:
-                    validateMethodHandle(cp, majorVersion);
+                    validateMethodHandle(pool, i, majorVersion);
                     break;
                 case METHOD_TYPE:
-                    if(pool[cp.descriptorIndex].tag != UTF8) {
+                    if (pool.tag(pool.descriptorIndex(i)) != UTF8) {
                         throw new ClassFormatError("invalid descriptorIndex");
                     }
                     break;
                 case DYNAMIC:
                 case INVOKE_DYNAMIC:
-                    if(pool[cp.nameAndTypeIndex].tag != NAME_AND_TYPE) {
+                    if (pool.tag(pool.nameAndTypeIndex(i)) != NAME_AND_TYPE) {
                         throw new ClassFormatError("invalid nameAndTypeIndex");
                     }
                     break;
@@ -180,105 +165,61 @@ public class CPInfo {
         }
     }
 
-    private static void validateMethodHandle(CPInfo cp, int majorVersion) {
-        switch (cp.referenceKind) {
+    private static void validateMethodHandle(ConstantPool pool, int index, int majorVersion) {
+        int referenceKind = pool.referenceKind(index);
+        int referenceIndex = pool.referenceIndex(index);
+        switch (referenceKind) {
             case REF_getField:
             case REF_getStatic:
             case REF_putField:
             case REF_putStatic:
-                if(cp.pool[cp.referenceIndex].tag != FIELD_REF) {
+                if (pool.tag(referenceIndex) != FIELD_REF) {
                     throw new ClassFormatError("invalid field reference");
                 }
                 break;
             case REF_invokeVirtual:
             case REF_newInvokeSpecial:
-                if(cp.pool[cp.referenceIndex].tag != METHOD_REF) {
+                if (pool.tag(referenceIndex) != METHOD_REF) {
                     throw new ClassFormatError("invalid method reference");
                 }
                 break;
             case REF_invokeStatic:
             case REF_invokeSpecial:
                 if (majorVersion < 52) {
-                    if(cp.pool[cp.referenceIndex].tag != METHOD_REF) {
+                    if (pool.tag(referenceIndex) != METHOD_REF) {
                         throw new ClassFormatError("invalid method reference");
                     }
                 } else {
-                    int tag = cp.pool[cp.referenceIndex].tag;
-                    if(tag != METHOD_REF && tag != INTERFACE_METHOD_REF) {
+                    int tag = pool.tag(referenceIndex);
+                    if (tag != METHOD_REF && tag != INTERFACE_METHOD_REF) {
                         throw new ClassFormatError("invalid method or interface-method reference");
                     }
                 }
                 break;
             case REF_invokeInterface:
-                if(cp.pool[cp.referenceIndex].tag != INTERFACE_METHOD_REF) {
+                if (pool.tag(referenceIndex) != INTERFACE_METHOD_REF) {
                     throw new ClassFormatError("invalid interface-method reference");
                 }
                 break;
             default:
                 throw new ClassFormatError("invalid reference kind");
         }
-        switch (cp.referenceKind) {
+        switch (referenceKind) {
             case REF_invokeVirtual:
             case REF_invokeStatic:
             case REF_invokeSpecial:
             case REF_newInvokeSpecial:
             case REF_invokeInterface:
-                CPInfo ref = cp.pool[cp.referenceIndex];
-                ref = cp.pool[ref.nameAndTypeIndex];
-                ref = cp.pool[ref.nameIndex];
-                String name = ref.stringBytes;
-                if (cp.referenceKind == REF_newInvokeSpecial) {
-                    if(!"<init>".equals(name)) {
+                String name = pool.name(pool.nameAndTypeIndex(referenceIndex));
+                if (referenceKind == REF_newInvokeSpecial) {
+                    if (!"<init>".equals(name)) {
                         throw new ClassFormatError("REF_newInvokeSpecial is applicable to constructors only");
                     }
                 } else {
-                    if("<init>".equals(name) || "<clinit>".equals(name)) {
-                        throw new ClassFormatError("constructors or static initializer cannot have reference kind " + cp.referenceKind);
+                    if ("<init>".equals(name) || "<clinit>".equals(name)) {
+                        throw new ClassFormatError("constructors or static initializer cannot have reference kind " + referenceKind);
                     }
                 }
         }
     }
-
-    @Override
-    public String toString() {
-        switch (tag) {
-            case UTF8:
-                return stringBytes;
-            case INTEGER:
-                return String.valueOf(intBytes);
-            case FLOAT:
-                return String.valueOf(floatBytes);
-            case LONG:
-                return String.valueOf(longBytes);
-            case DOUBLE:
-                return String.valueOf(doubleBytes);
-            case STRING:
-                return String.valueOf(stringIndex);
-            case CLASS:
-            case MODULE:
-            case PACKAGE:
-                return pool[nameIndex].toString();
-            case FIELD_REF:
-            case METHOD_REF:
-            case INTERFACE_METHOD_REF:
-                String cls = pool[classIndex].toString();
-                String nameAndType = pool[nameAndTypeIndex].toString();
-                return cls + nameAndType;
-            case NAME_AND_TYPE:
-                String name = pool[nameIndex].toString();
-                String description = pool[descriptorIndex].toString();
-                return Utils.getSignature(name, description);
-            case METHOD_HANDLE:
-                return pool[referenceIndex].toString();
-            case METHOD_TYPE:
-                return pool[descriptorIndex].toString();
-            case DYNAMIC:
-            case INVOKE_DYNAMIC:
-                String bootstrapMethodAttribute = pool[bootstrapMethodAttrIndex].toString();
-                nameAndType = pool[nameAndTypeIndex].toString();
-                return bootstrapMethodAttribute + nameAndType;
-            default:
-                return String.valueOf(tag);
-        }
-    }
 }
@@ -0,0 +1,213 @@
+package org.classinfo;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Static call graph between methods, extracted from the invoke instructions of each method body. {@link #add} may
+ * be called concurrently, e.g. from a {@link ClassScanner} callback; methods are interned to dense int ids and the
+ * first query after an update compacts the edges into CSR arrays. An {@code invokedynamic} site has no static
+ * target, so it is recorded as a call to its name and type on the calling class, with opcode
+ * {@link Opcodes#INVOKEDYNAMIC}.
+ */
+public class CallGraph {
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Set<String> classes = ConcurrentHashMap.newKeySet();
+    private final Object lock = new Object();
+    private String[] owners = new String[4096];
+    private String[] names = new String[4096];
+    private String[] descriptors = new String[4096];
+    private int count;
+    private int[] edges = new int[4096];
+    private int edgeCount;
+    private volatile Graph graph;
+
+    /**
+     * Adds the calls of one class. When the same class is added twice the first definition wins, as on a class path.
+     */
+    public void add(ClassInfo classInfo) {
+        String className = classInfo.getClassName();
+        if (!classes.add(className)) {
+            return;
+        }
+        ConstantPool pool = classInfo.getConstantPool();
+        int[] resolved = new int[pool.size()];
+        int[] local = new int[64];
+        int n = 0;
+        InstructionCursor cursor = null;
+        for (MethodInfo method : classInfo.getMethods()) {
+            Code code = method.getCode();
+            if (code == null) {
+                continue;
+            }
+            int caller = intern(className, method.getName(), method.getDescriptor());
+            cursor = cursor == null ? code.instructions() : cursor.reset(code);
+            while (cursor.next()) {
+                int opcode = cursor.opcode();
+                if (opcode < Opcodes.INVOKEVIRTUAL || opcode > Opcodes.INVOKEDYNAMIC) {
+                    continue;
+                }
+                int index = cursor.cpIndex();
+                if (resolved[index] == 0) {
+                    int nameAndType = pool.nameAndTypeIndex(index);
+                    String owner = opcode == Opcodes.INVOKEDYNAMIC ? className
+                            : pool.className(pool.classIndex(index)).replace('/', '.');
+                    resolved[index] = intern(owner, pool.name(nameAndType), pool.descriptor(nameAndType)) + 1;
+                }
+                if (n + 3 > local.length) {
+                    local = Arrays.copyOf(local, local.length * 2);
+                }
+                local[n++] = caller;
+                local[n++] = resolved[index] - 1;
+                local[n++] = opcode;
+            }
+        }
+        synchronized (lock) {
+            if (edgeCount + n > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(edges.length * 2, edgeCount + n));
+            }
+            System.arraycopy(local, 0, edges, edgeCount, n);
+            edgeCount += n;
+            graph = null;
+        }
+    }
+
+    private int intern(String owner, String name, String descriptor) {
+        String key = owner + '.' + name + descriptor;
+        Integer id = ids.get(key);
+        if (id == null) {
+            synchronized (lock) {
+                id = ids.get(key);
+                if (id == null) {
+                    if (count == owners.length) {
+                        owners = Arrays.copyOf(owners, count * 2);
+                        names = Arrays.copyOf(names, count * 2);
+                        descriptors = Arrays.copyOf(descriptors, count * 2);
+                    }
+                    owners[count] = owner;
+                    names[count] = name;
+                    descriptors[count] = descriptor;
+                    id = count++;
+                    // a reader that finds the id must not find a graph built without it
+                    graph = null;
+                    ids.put(key, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    public int size() {
+        return graph().size;
+    }
+
+    public int getEdgeCount() {
+        return graph().callees.length;
+    }
+
+    /**
+     * Returns the id of a method by dotted owner class name, name and descriptor, or -1 if it neither calls nor
+     * is called.
+     */
+    public int id(String owner, String name, String descriptor) {
+        Integer id = ids.get(owner + '.' + name + descriptor);
+        return id == null ? -1 : id;
+    }
+
+    public String getOwner(int id) {
+        return graph().owners[id];
+    }
+
+    public String getName(int id) {
+        return graph().names[id];
+    }
+
+    public String getDescriptor(int id) {
+        return graph().descriptors[id];
+    }
+
+    /**
+     * Returns the callee of every call site in method {@code id}, in bytecode order per method body.
+     */
+    public int[] getCallees(int id) {
+        Graph g = graph();
+        return Arrays.copyOfRange(g.callees, g.calleeStart[id], g.calleeStart[id + 1]);
+    }
+
+    /**
+     * Returns the invoke opcode of every call site in method {@code id}, parallel to {@link #getCallees}.
+     */
+    public int[] getCallOpcodes(int id) {
+        Graph g = graph();
+        int[] opcodes = new int[g.calleeStart[id + 1] - g.calleeStart[id]];
+        for (int i = 0; i < opcodes.length; i++) {
+            opcodes[i] = g.opcodes[g.calleeStart[id] + i] & 0xFF;
+        }
+        return opcodes;
+    }
+
+    public int[] getCallers(int id) {
+        Graph g = graph();
+        return Arrays.copyOfRange(g.callers, g.callerStart[id], g.callerStart[id + 1]);
+    }
+
+    private Graph graph() {
+        Graph g = graph;
+        if (g == null) {
+            synchronized (lock) {
+                g = graph;
+                if (g == null) {
+                    g = new Graph(this);
+                    graph = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    private static final class Graph {
+
+        final int size;
+        final String[] owners;
+        final String[] names;
+        final String[] descriptors;
+        final int[] calleeStart;
+        final int[] callees;
+        final byte[] opcodes;
+        final int[] callerStart;
+        final int[] callers;
+
+        Graph(CallGraph callGraph) {
+            size = callGraph.count;
+            owners = Arrays.copyOf(callGraph.owners, size);
+            names = Arrays.copyOf(callGraph.names, size);
+            descriptors = Arrays.copyOf(callGraph.descriptors, size);
+            int[] edges = callGraph.edges;
+            int edgeCount = callGraph.edgeCount / 3;
+            calleeStart = new int[size + 1];
+            callerStart = new int[size + 1];
+            for (int e = 0; e < callGraph.edgeCount; e += 3) {
+                calleeStart[edges[e] + 1]++;
+                callerStart[edges[e + 1] + 1]++;
+            }
+            for (int id = 0; id < size; id++) {
+                calleeStart[id + 1] += calleeStart[id];
+                callerStart[id + 1] += callerStart[id];
+            }
+            callees = new int[edgeCount];
+            opcodes = new byte[edgeCount];
+            callers = new int[edgeCount];
+            int[] calleeFill = Arrays.copyOf(calleeStart, size);
+            int[] callerFill = Arrays.copyOf(callerStart, size);
+            for (int e = 0; e < callGraph.edgeCount; e += 3) {
+                int slot = calleeFill[edges[e]]++;
+                callees[slot] = edges[e + 1];
+                opcodes[slot] = (byte) edges[e + 2];
+                callers[callerFill[edges[e + 1]]++] = edges[e];
+            }
+        }
+    }
+}
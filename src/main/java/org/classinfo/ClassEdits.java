@@ -0,0 +1,51 @@
+package org.classinfo;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Changes that a {@link ClassWriter} applies while it writes a {@link ClassInfo}, which itself stays as parsed.
+ * Member flags are keyed by the {@link FieldInfo} or {@link MethodInfo} instance and only apply to the class it
+ * came from; the class flags and the removed attributes apply to any class. Once no longer changed, an edit set may
+ * be shared by threads.
+ */
+public final class ClassEdits {
+
+    private int accessFlags = -1;
+    private final Map<AbstractInfo, Integer> memberFlags = new IdentityHashMap<>();
+    private Predicate<String> removedAttributes;
+
+    public void setAccessFlags(int accessFlags) {
+        this.accessFlags = accessFlags & 0xFFFF;
+    }
+
+    public void setAccessFlags(FieldInfo field, int accessFlags) {
+        memberFlags.put(field, accessFlags & 0xFFFF);
+    }
+
+    public void setAccessFlags(MethodInfo method, int accessFlags) {
+        memberFlags.put(method, accessFlags & 0xFFFF);
+    }
+
+    /**
+     * Removes the attributes whose name matches from the class, its fields and methods, their {@code Code}
+     * attributes and its record components, including attributes that were skipped while parsing.
+     */
+    public void removeAttributes(Predicate<String> names) {
+        removedAttributes = removedAttributes == null ? names : removedAttributes.or(names);
+    }
+
+    int accessFlags(ClassInfo classInfo) {
+        return accessFlags < 0 ? classInfo.getAccessFlags() : accessFlags;
+    }
+
+    int accessFlags(AbstractInfo member) {
+        Integer flags = memberFlags.get(member);
+        return flags == null ? member.getAccessFlags() : flags;
+    }
+
+    Predicate<String> removedAttributes() {
+        return removedAttributes;
+    }
+}
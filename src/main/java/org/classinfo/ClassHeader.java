@@ -0,0 +1,134 @@
+package org.classinfo;
+
+import java.io.IOException;
+
+public class ClassHeader {
+
+    final int minorVersion;
+    final int majorVersion;
+    final ConstantPool pool;
+    final int accessFlags;
+    final int thisClass;
+    final int superClass;
+    final int[] interfaces;
+
+    ClassHeader(ByteReader reader, int flags) throws IOException {
+        this(reader, flags, null);
+    }
+
+    ClassHeader(ByteReader reader, int flags, SymbolTable symbols) throws IOException {
+        this(reader, flags, symbols, null);
+    }
+
+    /**
+     * With {@code reuse} the constant pool is read into that pool, which stays lazy, instead of a new one.
+     */
+    ClassHeader(ByteReader reader, int flags, SymbolTable symbols, ConstantPool reuse) throws IOException {
+        int magic = reader.readInt();
+        if (magic != 0xCAFEBABE) {
+            throw new ClassFormatError("Invalid magic number " + magic);
+        }
+        minorVersion = reader.readUnsignedShort();
+        majorVersion = reader.readUnsignedShort();
+        if (reuse != null) {
+            CPInfo.readConstantPool(reader, reuse);
+            pool = reuse;
+        } else {
+            pool = CPInfo.readConstantPool(reader, (flags & ClassInfo.LAZY_POOL) != 0, symbols);
+        }
+        accessFlags = reader.readUnsignedShort();
+        thisClass = reader.readUnsignedShort();
+        superClass = reader.readUnsignedShort();
+        int interfaces_count = reader.readUnsignedShort();
+        interfaces = new int[interfaces_count];
+        for (int i = 0; i < interfaces_count; i++) {
+            interfaces[i] = reader.readUnsignedShort();
+        }
+        if ((flags & ClassInfo.VALIDATE) != 0) {
+            ParseMetrics.Recorder recorder = reader.recorder;
+            int phase = recorder == null ? 0 : recorder.enter(ParseMetrics.VALIDATE);
+            validateHeader();
+            if (recorder != null) {
+                recorder.enter(phase);
+            }
+        }
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public ConstantPool getConstantPool() {
+        return pool;
+    }
+
+    public String getClassName() {
+        return getClassName(thisClass);
+    }
+
+    public String getSuperClassName() {
+        return superClass == 0 ? null : getClassName(superClass);
+    }
+
+    public String[] getInterfaceNames() {
+        String[] names = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            names[i] = getClassName(interfaces[i]);
+        }
+        return names;
+    }
+
+    private String getClassName(int poolIndex) {
+        return pool.className(poolIndex).replace('/', '.');
+    }
+
+    public void validate() {
+        validateHeader();
+    }
+
+    private void validateHeader() {
+        CPInfo.validate(pool, majorVersion);
+        if (pool.tag(thisClass) != CPInfo.CLASS) {
+            throw new ClassFormatError("class name not found");
+        }
+        if (superClass != 0 && pool.tag(superClass) != CPInfo.CLASS) {
+            throw new ClassFormatError("super class name not found");
+        }
+        for (int interfaceIndex : interfaces) {
+            if (pool.tag(interfaceIndex) != CPInfo.CLASS) {
+                throw new ClassFormatError("interface name not found");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        String flag = Utils.getClassFlags(accessFlags);
+        String className = getClassName(thisClass);
+        sb.append(flag).append(' ').append(className);
+        if (superClass != 0) {
+            String superClassName = getClassName(superClass);
+            if (!"java.lang.Object".equals(superClassName)) {
+                sb.append(" extends ").append(superClassName);
+            }
+        }
+        if (interfaces.length != 0) {
+            sb.append(" implements ");
+            for (int i : interfaces) {
+                sb.append(getClassName(i)).append(", ");
+            }
+            sb.delete(sb.length() - 2, sb.length());
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.classinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The super class and interface graph of a set of classes. {@link #add} may be called concurrently, e.g. from a
+ * {@link ClassScanner} callback. Class names are interned to dense int ids and the first query after an update
+ * compacts the edges into primitive adjacency arrays. Referenced but never added classes get ids too, with
+ * {@link #getAccessFlags} returning -1.
+ */
+public class ClassHierarchy {
+
+    private static final int ACC_INTERFACE = 0x0200;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private String[] names = new String[1024];
+    private int count;
+    private int[] definitions = new int[1024];
+    private int definitionCount;
+    private int[] interfaceIds = new int[1024];
+    private int interfaceCount;
+    private volatile Graph graph;
+
+    public void add(ClassHeader header) {
+        add(header.getClassName(), header.getSuperClassName(), header.getInterfaceNames(), header.getAccessFlags());
+    }
+
+    /**
+     * Adds one class. When the same class is added twice the first definition wins, as on a class path.
+     */
+    public void add(String className, String superClassName, String[] interfaceNames, int accessFlags) {
+        int id = intern(className);
+        int superId = superClassName == null ? -1 : intern(superClassName);
+        int[] interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = intern(interfaceNames[i]);
+        }
+        synchronized (lock) {
+            if (definitionCount + 5 > definitions.length) {
+                definitions = Arrays.copyOf(definitions, definitions.length * 2);
+            }
+            if (interfaceCount + interfaces.length > interfaceIds.length) {
+                interfaceIds = Arrays.copyOf(interfaceIds, Math.max(interfaceIds.length * 2,
+                        interfaceCount + interfaces.length));
+            }
+            definitions[definitionCount++] = id;
+            definitions[definitionCount++] = superId;
+            definitions[definitionCount++] = accessFlags;
+            definitions[definitionCount++] = interfaceCount;
+            definitions[definitionCount++] = interfaces.length;
+            System.arraycopy(interfaces, 0, interfaceIds, interfaceCount, interfaces.length);
+            interfaceCount += interfaces.length;
+            graph = null;
+        }
+    }
+
+    private int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            synchronized (lock) {
+                id = ids.get(name);
+                if (id == null) {
+                    if (count == names.length) {
+                        names = Arrays.copyOf(names, count * 2);
+                    }
+                    names[count] = name;
+                    id = count++;
+                    // a reader that finds the id must not find a graph built without it
+                    graph = null;
+                    ids.put(name, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    public int size() {
+        return graph().size;
+    }
+
+    /**
+     * Returns the id of {@code className}, or -1 if it is neither added nor referenced.
+     */
+    public int id(String className) {
+        Integer id = ids.get(className);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return graph().names[id];
+    }
+
+    public int getAccessFlags(int id) {
+        return graph().flags[id];
+    }
+
+    public int getSuperClass(int id) {
+        return graph().superClass[id];
+    }
+
+    public int[] getInterfaces(int id) {
+        Graph g = graph();
+        return Arrays.copyOfRange(g.interfaces, g.interfaceStart[id], g.interfaceStart[id + 1]);
+    }
+
+    public int[] getDirectSubtypes(int id) {
+        Graph g = graph();
+        return Arrays.copyOfRange(g.subtypes, g.subtypeStart[id], g.subtypeStart[id + 1]);
+    }
+
+    /**
+     * Returns the ids of all classes and interfaces that extend or implement {@code id}, directly or not.
+     */
+    public int[] getSubtypes(int id) {
+        return walk(graph(), id, false);
+    }
+
+    /**
+     * Returns the ids of all super classes and super interfaces of {@code id}, directly or not.
+     */
+    public int[] getSupertypes(int id) {
+        return walk(graph(), id, true);
+    }
+
+    private static int[] walk(Graph g, int id, boolean up) {
+        Walk walk = new Walk(g.size, id);
+        while (walk.head < walk.tail) {
+            int current = walk.queue[walk.head++];
+            if (up) {
+                walk.offer(g.superClass[current]);
+                walk.offer(g.interfaces, g.interfaceStart[current], g.interfaceStart[current + 1]);
+            } else {
+                walk.offer(g.subtypes, g.subtypeStart[current], g.subtypeStart[current + 1]);
+            }
+        }
+        return Arrays.copyOfRange(walk.queue, 1, walk.tail);
+    }
+
+    /**
+     * Returns true if {@code type} is {@code other} or one of its super types, like
+     * {@link Class#isAssignableFrom}. Only the known graph is consulted.
+     */
+    public boolean isAssignableFrom(int type, int other) {
+        if (type == other) {
+            return true;
+        }
+        for (int id : getSupertypes(other)) {
+            if (id == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ids of all added non-interface classes implementing {@code interfaceId}, directly or not.
+     */
+    public int[] getImplementors(int interfaceId) {
+        Graph g = graph();
+        int[] subtypes = getSubtypes(interfaceId);
+        int n = 0;
+        for (int id : subtypes) {
+            if (g.flags[id] != -1 && (g.flags[id] & ACC_INTERFACE) == 0) {
+                subtypes[n++] = id;
+            }
+        }
+        return Arrays.copyOf(subtypes, n);
+    }
+
+    public List<String> getSubtypes(String className) {
+        int id = id(className);
+        return id < 0 ? List.of() : names(getSubtypes(id));
+    }
+
+    public List<String> getSupertypes(String className) {
+        int id = id(className);
+        return id < 0 ? List.of() : names(getSupertypes(id));
+    }
+
+    public List<String> getImplementors(String interfaceName) {
+        int id = id(interfaceName);
+        return id < 0 ? List.of() : names(getImplementors(id));
+    }
+
+    public boolean isAssignableFrom(String type, String other) {
+        if (type.equals(other)) {
+            return true;
+        }
+        int typeId = id(type);
+        int otherId = id(other);
+        return typeId >= 0 && otherId >= 0 && isAssignableFrom(typeId, otherId);
+    }
+
+    private List<String> names(int[] ids) {
+        Graph g = graph();
+        List<String> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            list.add(g.names[id]);
+        }
+        return list;
+    }
+
+    private Graph graph() {
+        Graph g = graph;
+        if (g == null) {
+            synchronized (lock) {
+                g = graph;
+                if (g == null) {
+                    g = new Graph(this);
+                    graph = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    private static final class Walk {
+
+        final BitSet seen;
+        int[] queue = new int[16];
+        int head;
+        int tail;
+
+        Walk(int size, int start) {
+            seen = new BitSet(size);
+            offer(start);
+        }
+
+        void offer(int id) {
+            if (id >= 0 && !seen.get(id)) {
+                seen.set(id);
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, tail * 2);
+                }
+                queue[tail++] = id;
+            }
+        }
+
+        void offer(int[] ids, int start, int end) {
+            for (int i = start; i < end; i++) {
+                offer(ids[i]);
+            }
+        }
+    }
+
+    private static final class Graph {
+
+        final int size;
+        final String[] names;
+        final int[] flags;
+        final int[] superClass;
+        final int[] interfaceStart;
+        final int[] interfaces;
+        final int[] subtypeStart;
+        final int[] subtypes;
+
+        Graph(ClassHierarchy hierarchy) {
+            size = hierarchy.count;
+            names = Arrays.copyOf(hierarchy.names, size);
+            flags = new int[size];
+            superClass = new int[size];
+            Arrays.fill(flags, -1);
+            Arrays.fill(superClass, -1);
+            int[] definition = new int[size];
+            Arrays.fill(definition, -1);
+            int[] defs = hierarchy.definitions;
+            for (int d = 0; d < hierarchy.definitionCount; d += 5) {
+                int id = defs[d];
+                if (definition[id] < 0) {
+                    definition[id] = d;
+                    superClass[id] = defs[d + 1];
+                    flags[id] = defs[d + 2];
+                }
+            }
+            interfaceStart = new int[size + 1];
+            int[] subtypeCounts = new int[size + 1];
+            for (int id = 0; id < size; id++) {
+                int d = definition[id];
+                int n = d < 0 ? 0 : defs[d + 4];
+                interfaceStart[id + 1] = interfaceStart[id] + n;
+                if (superClass[id] >= 0) {
+                    subtypeCounts[superClass[id] + 1]++;
+                }
+                for (int i = 0; i < n; i++) {
+                    subtypeCounts[hierarchy.interfaceIds[defs[d + 3] + i] + 1]++;
+                }
+            }
+            interfaces = new int[interfaceStart[size]];
+            for (int id = 0; id < size; id++) {
+                int d = definition[id];
+                if (d >= 0) {
+                    System.arraycopy(hierarchy.interfaceIds, defs[d + 3], interfaces, interfaceStart[id], defs[d + 4]);
+                }
+            }
+            subtypeStart = subtypeCounts;
+            for (int id = 0; id < size; id++) {
+                subtypeStart[id + 1] += subtypeStart[id];
+            }
+            subtypes = new int[subtypeStart[size]];
+            int[] fill = Arrays.copyOf(subtypeStart, size);
+            for (int id = 0; id < size; id++) {
+                if (superClass[id] >= 0) {
+                    subtypes[fill[superClass[id]]++] = id;
+                }
+                for (int e = interfaceStart[id]; e < interfaceStart[id + 1]; e++) {
+                    subtypes[fill[interfaces[e]]++] = id;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package org.classinfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Class metadata (names, super class, interfaces, flags, field and method signatures) of a set of jars,
+ * jmods or class directories, persisted in a compact binary file that is memory mapped on open.
+ * {@link #update} re-parses only those sources whose size and mtime (or content hash) changed.
+ */
+public final class ClassIndex {
+
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int SOURCE_SIZE = 36;
+    private static final int CLASS_SIZE = 32;
+    private static final int MEMBER_SIZE = 12;
+    private static final int PARSE_FLAGS = ClassInfo.LAZY_POOL | ClassInfo.SKIP_CODE | ClassInfo.SKIP_DEBUG
+            | ClassInfo.SKIP_FRAMES | ClassInfo.SKIP_ANNOTATIONS;
+
+    private final ByteBuffer buffer;
+    private final int sourceCount;
+    private final int classCount;
+    private final int sources;
+    private final int classes;
+    private final int refs;
+    private final int members;
+    private final int hashes;
+    private final int strings;
+    private final int hashMask;
+
+    private ClassIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a class index");
+        }
+        this.buffer = buffer;
+        this.sourceCount = buffer.getInt(8);
+        this.classCount = buffer.getInt(12);
+        this.sources = buffer.getInt(16);
+        this.classes = buffer.getInt(20);
+        this.refs = buffer.getInt(24);
+        this.members = buffer.getInt(28);
+        this.hashes = buffer.getInt(32);
+        this.strings = buffer.getInt(36);
+        this.hashMask = buffer.getInt(hashes) - 1;
+    }
+
+    public static ClassIndex open(Path file) throws IOException {
+        return new ClassIndex(ClassInfo.map(file));
+    }
+
+    public static ClassIndex update(Path file, Collection<Path> sources) throws IOException {
+        return update(file, sources, false);
+    }
+
+    /**
+     * Rebuilds {@code file} for {@code sources}, reusing the entries of an existing index for every source whose
+     * size and mtime are unchanged, or whose CRC32C matches when {@code hashContents} is set.
+     */
+    public static ClassIndex update(Path file, Collection<Path> sources, boolean hashContents) throws IOException {
+        Map<String, Source> previous = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try {
+                for (Source source : open(file).readSources()) {
+                    previous.put(source.path, source);
+                }
+            } catch (IOException | RuntimeException e) {
+                previous.clear();
+            }
+        }
+        List<Source> current = new ArrayList<>();
+        for (Path path : sources) {
+            Source source = stamp(path.toAbsolutePath().normalize(), hashContents);
+            Source old = previous.get(source.path);
+            if (old != null && old.size == source.size
+                    && (hashContents ? old.hash == source.hash && old.hash != 0 : old.mtime == source.mtime)) {
+                source.classes = old.classes;
+            } else {
+                source.classes = parse(path);
+            }
+            current.add(source);
+        }
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, write(current));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return open(file);
+    }
+
+    public int size() {
+        return classCount;
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public String getSource(int source) {
+        return string(buffer.getInt(sources + source * SOURCE_SIZE));
+    }
+
+    /**
+     * Returns the id of the class named {@code className} (dotted), or -1 if it is not indexed. When several
+     * sources define the same class the first one wins, as on a class path.
+     */
+    public int find(String className) {
+        byte[] bytes = className.getBytes(StandardCharsets.UTF_8);
+        for (int slot = hash(bytes) & hashMask; ; slot = (slot + 1) & hashMask) {
+            int id = buffer.getInt(hashes + 4 + slot * 4) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (equals(buffer.getInt(record(id)), bytes)) {
+                return id;
+            }
+        }
+    }
+
+    public String getClassName(int id) {
+        return string(buffer.getInt(record(id)));
+    }
+
+    public String getSuperClassName(int id) {
+        int index = buffer.getInt(record(id) + 4);
+        return index == 0 ? null : string(index - 1);
+    }
+
+    public int getAccessFlags(int id) {
+        return buffer.getShort(record(id) + 8) & 0xFFFF;
+    }
+
+    public int getMajorVersion(int id) {
+        return buffer.getShort(record(id) + 10) & 0xFFFF;
+    }
+
+    public String[] getInterfaceNames(int id) {
+        int record = record(id);
+        int offset = refs + buffer.getInt(record + 12) * 4;
+        String[] names = new String[buffer.getShort(record + 16) & 0xFFFF];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = string(buffer.getInt(offset + i * 4));
+        }
+        return names;
+    }
+
+    public int getFieldCount(int id) {
+        return buffer.getShort(record(id) + 18) & 0xFFFF;
+    }
+
+    public int getFieldAccessFlags(int id, int field) {
+        return buffer.getShort(member(id, field)) & 0xFFFF;
+    }
+
+    public String getFieldName(int id, int field) {
+        return string(buffer.getInt(member(id, field) + 4));
+    }
+
+    public String getFieldDescriptor(int id, int field) {
+        return string(buffer.getInt(member(id, field) + 8));
+    }
+
+    public int getMethodCount(int id) {
+        return buffer.getShort(record(id) + 20) & 0xFFFF;
+    }
+
+    public int getMethodAccessFlags(int id, int method) {
+        return buffer.getShort(member(id, getFieldCount(id) + method)) & 0xFFFF;
+    }
+
+    public String getMethodName(int id, int method) {
+        return string(buffer.getInt(member(id, getFieldCount(id) + method) + 4));
+    }
+
+    public String getMethodDescriptor(int id, int method) {
+        return string(buffer.getInt(member(id, getFieldCount(id) + method) + 8));
+    }
+
+    public int getSourceOf(int id) {
+        return buffer.getInt(record(id) + 28);
+    }
+
+    private int record(int id) {
+        if (id < 0 || id >= classCount) {
+            throw new IndexOutOfBoundsException("Class id: " + id);
+        }
+        return classes + id * CLASS_SIZE;
+    }
+
+    private int member(int id, int index) {
+        return members + (buffer.getInt(record(id) + 24) + index) * MEMBER_SIZE;
+    }
+
+    private String string(int index) {
+        int offset = buffer.getInt(strings + 4 + index * 4);
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+        buffer.duplicate().position(offset + 2).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean equals(int index, byte[] bytes) {
+        int offset = buffer.getInt(strings + 4 + index * 4);
+        if ((buffer.getShort(offset) & 0xFFFF) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + 2 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private List<Source> readSources() {
+        List<Source> list = new ArrayList<>(sourceCount);
+        for (int s = 0; s < sourceCount; s++) {
+            int offset = sources + s * SOURCE_SIZE;
+            Source source = new Source(getSource(s), buffer.getLong(offset + 4), buffer.getLong(offset + 12),
+                    buffer.getLong(offset + 20));
+            int first = buffer.getInt(offset + 28);
+            int count = buffer.getInt(offset + 32);
+            source.classes = new ArrayList<>(count);
+            for (int id = first; id < first + count; id++) {
+                Entry entry = new Entry();
+                entry.name = getClassName(id);
+                entry.superName = getSuperClassName(id);
+                entry.accessFlags = getAccessFlags(id);
+                entry.majorVersion = getMajorVersion(id);
+                entry.interfaces = getInterfaceNames(id);
+                int fieldCount = getFieldCount(id);
+                int memberCount = fieldCount + getMethodCount(id);
+                entry.fieldCount = fieldCount;
+                entry.memberFlags = new int[memberCount];
+                entry.memberNames = new String[memberCount];
+                entry.memberDescriptors = new String[memberCount];
+                for (int m = 0; m < memberCount; m++) {
+                    int member = member(id, m);
+                    entry.memberFlags[m] = buffer.getShort(member) & 0xFFFF;
+                    entry.memberNames[m] = string(buffer.getInt(member + 4));
+                    entry.memberDescriptors[m] = string(buffer.getInt(member + 8));
+                }
+                source.classes.add(entry);
+            }
+            list.add(source);
+        }
+        return list;
+    }
+
+    private static Source stamp(Path path, boolean hashContents) throws IOException {
+        CRC32C crc = hashContents ? new CRC32C() : null;
+        long size = 0;
+        long mtime = 0;
+        if (Files.isDirectory(path)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(file -> file.toString().endsWith(".class") && Files.isRegularFile(file))
+                        .sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                size += Files.size(file);
+                mtime = Math.max(mtime, Files.getLastModifiedTime(file).toMillis());
+                if (crc != null) {
+                    crc.update(path.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    update(crc, file);
+                }
+            }
+        } else {
+            size = Files.size(path);
+            mtime = Files.getLastModifiedTime(path).toMillis();
+            if (crc != null) {
+                update(crc, path);
+            }
+        }
+        return new Source(path.toString(), size, mtime, crc == null ? 0 : crc.getValue() | 1L << 32);
+    }
+
+    private static void update(CRC32C crc, Path file) throws IOException {
+        byte[] chunk = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n; (n = in.read(chunk)) > 0; ) {
+                crc.update(chunk, 0, n);
+            }
+        }
+    }
+
+    private static List<Entry> parse(Path path) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        new ClassScanner(ForkJoinPool.commonPool(),
+                4 * Runtime.getRuntime().availableProcessors(), PARSE_FLAGS).scan(path, (name, classInfo) -> {
+            Entry entry = new Entry(classInfo);
+            synchronized (entries) {
+                entries.add(entry);
+            }
+        });
+        entries.sort(Comparator.comparing(entry -> entry.name));
+        return entries;
+    }
+
+    private static byte[] write(List<Source> sourceList) throws IOException {
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        ByteArrayOutputStream sourceBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream refBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream memberBytes = new ByteArrayOutputStream();
+        DataOutputStream sourceOut = new DataOutputStream(sourceBytes);
+        DataOutputStream classOut = new DataOutputStream(classBytes);
+        DataOutputStream refOut = new DataOutputStream(refBytes);
+        DataOutputStream memberOut = new DataOutputStream(memberBytes);
+        List<Integer> names = new ArrayList<>();
+        int classCount = 0;
+        int refCount = 0;
+        int memberCount = 0;
+        for (int s = 0; s < sourceList.size(); s++) {
+            Source source = sourceList.get(s);
+            sourceOut.writeInt(id(stringIds, source.path));
+            sourceOut.writeLong(source.size);
+            sourceOut.writeLong(source.mtime);
+            sourceOut.writeLong(source.hash);
+            sourceOut.writeInt(classCount);
+            sourceOut.writeInt(source.classes.size());
+            for (Entry entry : source.classes) {
+                names.add(id(stringIds, entry.name));
+                classOut.writeInt(names.get(classCount++));
+                classOut.writeInt(entry.superName == null ? 0 : id(stringIds, entry.superName) + 1);
+                classOut.writeShort(entry.accessFlags);
+                classOut.writeShort(entry.majorVersion);
+                classOut.writeInt(refCount);
+                classOut.writeShort(entry.interfaces.length);
+                classOut.writeShort(entry.fieldCount);
+                classOut.writeShort(entry.memberNames.length - entry.fieldCount);
+                classOut.writeShort(0);
+                classOut.writeInt(memberCount);
+                classOut.writeInt(s);
+                for (String name : entry.interfaces) {
+                    refOut.writeInt(id(stringIds, name));
+                    refCount++;
+                }
+                for (int m = 0; m < entry.memberNames.length; m++) {
+                    memberOut.writeShort(entry.memberFlags[m]);
+                    memberOut.writeShort(0);
+                    memberOut.writeInt(id(stringIds, entry.memberNames[m]));
+                    memberOut.writeInt(id(stringIds, entry.memberDescriptors[m]));
+                    memberCount++;
+                }
+            }
+        }
+        List<byte[]> encoded = new ArrayList<>(stringIds.size());
+        for (String string : stringIds.keySet()) {
+            encoded.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        int capacity = Integer.highestOneBit(Math.max(classCount, 1) * 2 - 1) << 1;
+        int[] slots = new int[capacity];
+        for (int id = 0; id < classCount; id++) {
+            byte[] name = encoded.get(names.get(id));
+            int slot = hash(name) & capacity - 1;
+            while (slots[slot] != 0 && !Arrays.equals(name, encoded.get(names.get(slots[slot] - 1)))) {
+                slot = (slot + 1) & capacity - 1;
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = id + 1;
+            }
+        }
+
+        int sourcesOffset = HEADER_SIZE;
+        int classesOffset = sourcesOffset + sourceBytes.size();
+        int refsOffset = classesOffset + classBytes.size();
+        int membersOffset = refsOffset + refBytes.size();
+        int hashesOffset = membersOffset + memberBytes.size();
+        int stringsOffset = hashesOffset + 4 + capacity * 4;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(stringsOffset + 4 + encoded.size() * 24);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(sourceList.size());
+        out.writeInt(classCount);
+        out.writeInt(sourcesOffset);
+        out.writeInt(classesOffset);
+        out.writeInt(refsOffset);
+        out.writeInt(membersOffset);
+        out.writeInt(hashesOffset);
+        out.writeInt(stringsOffset);
+        sourceBytes.writeTo(out);
+        classBytes.writeTo(out);
+        refBytes.writeTo(out);
+        memberBytes.writeTo(out);
+        out.writeInt(capacity);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        out.writeInt(encoded.size());
+        int offset = stringsOffset + 4 + encoded.size() * 4;
+        for (byte[] string : encoded) {
+            if (string.length > 0xFFFF) {
+                throw new IOException("String too long: " + string.length + " bytes");
+            }
+            out.writeInt(offset);
+            offset += 2 + string.length;
+        }
+        for (byte[] string : encoded) {
+            out.writeShort(string.length);
+            out.write(string);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int id(Map<String, Integer> ids, String string) {
+        return ids.computeIfAbsent(string, key -> ids.size());
+    }
+
+    private static final class Source {
+
+        final String path;
+        final long size;
+        final long mtime;
+        final long hash;
+        List<Entry> classes;
+
+        Source(String path, long size, long mtime, long hash) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+        }
+    }
+
+    private static final class Entry {
+
+        String name;
+        String superName;
+        String[] interfaces;
+        int accessFlags;
+        int majorVersion;
+        int fieldCount;
+        int[] memberFlags;
+        String[] memberNames;
+        String[] memberDescriptors;
+
+        Entry() {
+        }
+
+        Entry(ClassInfo classInfo) {
+            name = classInfo.getClassName();
+            superName = classInfo.getSuperClassName();
+            interfaces = classInfo.getInterfaceNames();
+            accessFlags = classInfo.getAccessFlags();
+            majorVersion = classInfo.getMajorVersion();
+            FieldInfo[] fields = classInfo.getFields();
+            MethodInfo[] methods = classInfo.getMethods();
+            fieldCount = fields.length;
+            memberFlags = new int[fields.length + methods.length];
+            memberNames = new String[memberFlags.length];
+            memberDescriptors = new String[memberFlags.length];
+            for (int i = 0; i < memberFlags.length; i++) {
+                AbstractInfo member = i < fieldCount ? fields[i] : methods[i - fieldCount];
+                memberFlags[i] = member.getAccessFlags();
+                memberNames[i] = member.getName();
+                memberDescriptors[i] = member.getDescriptor();
+            }
+        }
+    }
+}
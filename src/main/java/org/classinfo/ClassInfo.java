@@ -1,81 +1,215 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
-public class ClassInfo {
+public class ClassInfo extends ClassHeader {
+
+    public static final int LAZY_POOL = 1;
+    public static final int SKIP_CODE = 2;
+    public static final int SKIP_DEBUG = 4;
+    public static final int SKIP_FRAMES = 8;
+    public static final int SKIP_ANNOTATIONS = 16;
+    /**
+     * Runs the {@link #validate()} checks while parsing: the constant pool once it has been read, each field and
+     * method right after it is parsed, and the length of every attribute against the bytes it consumed.
+     */
+    public static final int VALIDATE = 32;
+    /**
+     * Keeps the parsed buffer, which must then not change, so that a {@link ClassWriter} can copy from it.
+     */
+    public static final int KEEP_SOURCE = 64;
 
-    private final int minorVersion;
-    private final int majorVersion;
-    private final CPInfo[] pool;
-    private final int accessFlags;
-    private final int thisClass;
-    private final int superClass;
-    private final int[] interfaces;
     private final FieldInfo[] fields;
     private final MethodInfo[] methods;
     private final AttributeInfo[] attributes;
+    private final ByteBuffer source;
+    private final int start;
+    private final int flagsOffset;
+    private final int fieldsOffset;
+    private final int end;
+
+    public ClassInfo(Class<?> cls) throws IOException {
+        this(cls, 0);
+    }
 
-    public ClassInfo(Class cls) throws IOException {
-        this(cls.getResourceAsStream('/' + cls.getName().replace('.', '/') + ".class"));
+    public ClassInfo(Class<?> cls, int flags) throws IOException {
+        this(cls.getResourceAsStream('/' + cls.getName().replace('.', '/') + ".class"), flags);
     }
 
     public ClassInfo(InputStream inputStream) throws IOException {
-        try (DataInputStream stream = new DataInputStream(inputStream)) {
-            int magic = stream.readInt();
-            if (magic != 0xCAFEBABE) {
-                throw new ClassFormatError("Invalid magic number " + magic);
-            }
-            minorVersion = stream.readUnsignedShort();
-            majorVersion = stream.readUnsignedShort();
-            pool = CPInfo.readConstantPool(stream);
-            accessFlags = stream.readUnsignedShort();
-            thisClass = stream.readUnsignedShort();
-            superClass = stream.readUnsignedShort();
-            int interfaces_count = stream.readUnsignedShort();
-            interfaces = new int[interfaces_count];
-            for (int i = 0; i < interfaces_count; i++) {
-                interfaces[i] = stream.readUnsignedShort();
-            }
-            int count = stream.readUnsignedShort();
-            fields = new FieldInfo[count];
-            for (int i = 0; i < count; i++) {
-                fields[i] = new FieldInfo(stream, pool);
-            }
-            count = stream.readUnsignedShort();
-            methods = new MethodInfo[count];
-            for (int i = 0; i < count; i++) {
-                methods[i] = new MethodInfo(stream, pool);
-            }
-            count = stream.readUnsignedShort();
-            attributes = new AttributeInfo[count];
-            for (int i = 0; i < count; i++) {
-                attributes[i] = new AttributeInfo(stream, pool);
+        this(inputStream, 0);
+    }
+
+    public ClassInfo(InputStream inputStream, int flags) throws IOException {
+        this(new ByteReader(ByteBuffer.wrap(readAllBytes(inputStream))), flags, null);
+    }
+
+    private ClassInfo(ByteReader reader, int flags, SymbolTable symbols) throws IOException {
+        super(reader, flags, symbols);
+        ParseMetrics.Recorder recorder = reader.recorder;
+        ByteBuffer buffer = reader.buffer();
+        source = (flags & KEEP_SOURCE) != 0 ? buffer : null;
+        start = buffer.position();
+        fieldsOffset = reader.position();
+        flagsOffset = fieldsOffset - 8 - 2 * interfaces.length;
+        if (recorder != null) {
+            recorder.enter(ParseMetrics.FIELDS);
+        }
+        int count = reader.readUnsignedShort();
+        fields = new FieldInfo[count];
+        for (int i = 0; i < count; i++) {
+            fields[i] = new FieldInfo(reader, pool, flags);
+        }
+        if (recorder != null) {
+            recorder.enter(ParseMetrics.METHODS);
+        }
+        count = reader.readUnsignedShort();
+        methods = new MethodInfo[count];
+        for (int i = 0; i < count; i++) {
+            methods[i] = new MethodInfo(reader, pool, flags);
+        }
+        if (recorder != null) {
+            recorder.enter(ParseMetrics.ATTRIBUTES);
+        }
+        attributes = AttributeInfo.readAttributes(reader, pool, flags);
+        if ((flags & VALIDATE) != 0) {
+            if (recorder != null) {
+                recorder.enter(ParseMetrics.VALIDATE);
             }
-            if (inputStream.read() != -1) {
-                throw new ClassFormatError("Additional bytes found at the end of the stream");
+            for (AttributeInfo attributeInfo : attributes) {
+                attributeInfo.validate();
             }
         }
+        if (reader.hasRemaining()) {
+            throw new ClassFormatError("Additional bytes found at the end of the stream");
+        }
+        end = reader.position();
     }
 
-    private String getClassName(int poolIndex) {
-        return pool[poolIndex].toString().replace('/', '.');
+    public static ClassInfo parse(ByteBuffer buffer) throws IOException {
+        return parse(buffer, 0);
     }
 
-    public void validate() {
-        CPInfo.validate(pool, majorVersion);
-        if (pool[thisClass].tag != CPInfo.CLASS) {
-            throw new ClassFormatError("class name not found");
+    public static ClassInfo parse(ByteBuffer buffer, int flags) throws IOException {
+        return parse(buffer, flags, null);
+    }
+
+    /**
+     * Parses with UTF8 constants interned into {@code symbols}, which may be shared between threads.
+     */
+    public static ClassInfo parse(ByteBuffer buffer, int flags, SymbolTable symbols) throws IOException {
+        return new ClassInfo(new ByteReader(buffer), flags, symbols);
+    }
+
+    /**
+     * Parses while counting into {@code metrics}, which may be null.
+     */
+    public static ClassInfo parse(ByteBuffer buffer, int flags, SymbolTable symbols, ParseMetrics metrics)
+            throws IOException {
+        if (metrics == null) {
+            return parse(buffer, flags, symbols);
         }
-        if (superClass != 0 && pool[superClass].tag != CPInfo.CLASS) {
-            throw new ClassFormatError("super class name not found");
+        ByteReader reader = new ByteReader(buffer);
+        ParseMetrics.Recorder recorder = metrics.start();
+        reader.recorder = recorder;
+        ClassInfo classInfo;
+        try {
+            classInfo = new ClassInfo(reader, flags, symbols);
+        } catch (IOException | RuntimeException | ClassFormatError e) {
+            metrics.failed(e);
+            throw e;
         }
-        for (int interfaceIndex : interfaces) {
-            if (pool[interfaceIndex].tag != CPInfo.CLASS) {
-                throw new ClassFormatError("interface name not found");
-            }
+        recorder.finish(classInfo, buffer.remaining());
+        return classInfo;
+    }
+
+    public static ClassInfo parse(Path path) throws IOException {
+        return parse(path, 0);
+    }
+
+    public static ClassInfo parse(Path path, int flags) throws IOException {
+        return parse(map(path), flags);
+    }
+
+    static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            throw new IOException("Class file not found");
         }
+        try (InputStream stream = inputStream) {
+            return stream.readAllBytes();
+        }
+    }
+
+    public FieldInfo[] getFields() {
+        return fields.clone();
+    }
+
+    public MethodInfo[] getMethods() {
+        return methods.clone();
+    }
+
+    ByteBuffer source() {
+        return source;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int flagsOffset() {
+        return flagsOffset;
+    }
+
+    int fieldsOffset() {
+        return fieldsOffset;
+    }
+
+    int end() {
+        return end;
+    }
+
+    FieldInfo[] fields() {
+        return fields;
+    }
+
+    MethodInfo[] methods() {
+        return methods;
+    }
+
+    AttributeInfo[] attributes() {
+        return attributes;
+    }
+
+    public static void accept(ByteBuffer buffer, ClassVisitor visitor, int flags) throws IOException {
+        new EventParser(null).parse(buffer, visitor, flags);
+    }
+
+    public static void accept(Path path, ClassVisitor visitor, int flags) throws IOException {
+        accept(map(path), visitor, flags);
+    }
+
+    public static ClassHeader readHeader(ByteBuffer buffer) throws IOException {
+        return new ClassHeader(new ByteReader(buffer), LAZY_POOL);
+    }
+
+    public static ClassHeader readHeader(Path path) throws IOException {
+        return readHeader(map(path));
+    }
+
+    @Override
+    public void validate() {
+        super.validate();
         for (FieldInfo fieldInfo : fields) {
             fieldInfo.validate();
         }
@@ -87,26 +221,4 @@ public class ClassInfo {
         }
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        String flag = Utils.getClassFlags(accessFlags);
-        String className = getClassName(thisClass);
-        sb.append(flag).append(' ').append(className);
-        if (superClass != 0) {
-            String superClassName = getClassName(superClass);
-            if (!"java.lang.Object".equals(superClassName)) {
-                sb.append(" extends ").append(superClassName);
-            }
-        }
-        if (interfaces.length != 0) {
-            sb.append(" implements ");
-            for (int i : interfaces) {
-                sb.append(getClassName(i)).append(", ");
-            }
-            sb.delete(sb.length() - 2, sb.length());
-        }
-        return sb.toString();
-    }
-
 }
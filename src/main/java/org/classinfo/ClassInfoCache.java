@@ -0,0 +1,196 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe LRU cache of parsed classes, keyed by {@code Class} identity or by the SHA-256 of the class bytes.
+ * {@code Class} keys are held weakly, so the cache does not keep class loaders alive; an entry whose class has been
+ * unloaded is dropped and counted as an eviction. Parsing happens outside the lock, so two threads missing on the
+ * same key may both parse it.
+ */
+public class ClassInfoCache {
+
+    private final int maximumSize;
+    private final int flags;
+    private final boolean softValues;
+    private final Map<Object, Object> map;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final ReferenceQueue<Class<?>> unloaded = new ReferenceQueue<>();
+
+    public ClassInfoCache(int maximumSize) {
+        this(maximumSize, 0, false);
+    }
+
+    public ClassInfoCache(int maximumSize, int flags, boolean softValues) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.flags = flags;
+        this.softValues = softValues;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                if (size() > ClassInfoCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ClassInfo get(Class<?> cls) throws IOException {
+        ClassInfo classInfo = lookup(new ClassKey(cls, null));
+        if (classInfo == null) {
+            classInfo = new ClassInfo(cls, flags);
+            store(new ClassKey(cls, unloaded), classInfo);
+        }
+        return classInfo;
+    }
+
+    /**
+     * Returns the class parsed from the remaining bytes of {@code buffer}. With {@link ClassInfo#LAZY_POOL} or
+     * {@link ClassInfo#KEEP_SOURCE} the cached instance keeps a reference to the first buffer it was parsed from.
+     */
+    public ClassInfo get(ByteBuffer buffer) throws IOException {
+        ContentKey key = new ContentKey(buffer);
+        ClassInfo classInfo = lookup(key);
+        if (classInfo == null) {
+            classInfo = ClassInfo.parse(buffer, flags);
+            store(key, classInfo);
+        }
+        return classInfo;
+    }
+
+    private ClassInfo lookup(Object key) {
+        ClassInfo classInfo;
+        synchronized (map) {
+            expunge();
+            Object value = map.get(key);
+            classInfo = (ClassInfo) (value instanceof SoftReference ? ((SoftReference<?>) value).get() : value);
+            if (classInfo == null && value != null) {
+                map.remove(key);
+                evictions.increment();
+            }
+        }
+        if (classInfo == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return classInfo;
+    }
+
+    private void store(Object key, ClassInfo classInfo) {
+        Object value = softValues ? new SoftReference<>(classInfo) : classInfo;
+        synchronized (map) {
+            expunge();
+            map.put(key, value);
+        }
+    }
+
+    private void expunge() {
+        Object key;
+        while ((key = unloaded.poll()) != null) {
+            if (map.remove(key) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            expunge();
+            return map.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ClassInfoCache[size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ']';
+    }
+
+    private static final class ClassKey extends WeakReference<Class<?>> {
+
+        private final int hash;
+
+        ClassKey(Class<?> cls, ReferenceQueue<Class<?>> queue) {
+            super(cls, queue);
+            hash = System.identityHashCode(cls);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            Class<?> cls = get();
+            return cls != null && o instanceof ClassKey && ((ClassKey) o).get() == cls;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class ContentKey {
+
+        private final byte[] digest;
+        private final int hash;
+
+        ContentKey(ByteBuffer buffer) {
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            md.update(buffer.duplicate());
+            digest = md.digest();
+            hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ContentKey && Arrays.equals(digest, ((ContentKey) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A parser that one worker thread keeps for thousands of classes. The input buffer only grows, and the constant
+ * pool arrays and parser state are reused from class to class, so walking a class with a {@link ClassVisitor}
+ * allocates little more than its header and the strings the visitor asks for; with a {@link SymbolTable} those
+ * strings are shared as well. Not thread-safe.
+ */
+public final class ClassParser {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_RETAINED = 1 << 20;
+
+    private final int flags;
+    private final SymbolTable symbols;
+    private final ConstantPool pool;
+    private final EventParser parser;
+    private byte[] input = new byte[INITIAL_CAPACITY];
+    private ByteBuffer inputBuffer = ByteBuffer.wrap(input);
+
+    public ClassParser() {
+        this(0, null);
+    }
+
+    public ClassParser(int flags) {
+        this(flags, null);
+    }
+
+    public ClassParser(int flags, SymbolTable symbols) {
+        this.flags = flags;
+        this.symbols = symbols;
+        pool = new ConstantPool(null, new byte[256], new int[256], symbols);
+        parser = new EventParser(pool);
+    }
+
+    /**
+     * Walks the class in {@code buffer}. The header and constant pool handed to the visitor are reused, so they
+     * are only valid until the next call.
+     */
+    public void accept(ByteBuffer buffer, ClassVisitor visitor) throws IOException {
+        parser.parse(buffer, visitor, flags);
+    }
+
+    public void accept(InputStream in, ClassVisitor visitor) throws IOException {
+        accept(read(in), visitor);
+    }
+
+    public void accept(Path path, ClassVisitor visitor) throws IOException {
+        accept(read(path), visitor);
+    }
+
+    /**
+     * Parses a {@link ClassInfo} that shares nothing with this parser, not even its bytes, which are copied out
+     * of the input buffer.
+     */
+    public ClassInfo parse(InputStream in) throws IOException {
+        return snapshot(read(in));
+    }
+
+    public ClassInfo parse(Path path) throws IOException {
+        return snapshot(read(path));
+    }
+
+    /**
+     * Forgets the last class, so that nothing it referenced stays reachable from this parser, and gives back an
+     * input buffer that a very large class made grow. Parsing the next class does not require it.
+     */
+    public void reset() {
+        pool.reset(null, 0);
+        parser.reset();
+        if (input.length > MAX_RETAINED) {
+            input = new byte[INITIAL_CAPACITY];
+            inputBuffer = ByteBuffer.wrap(input);
+        }
+    }
+
+    private ClassInfo snapshot(ByteBuffer buffer) throws IOException {
+        return ClassInfo.parse(ByteBuffer.wrap(Arrays.copyOf(input, buffer.limit())), flags, symbols);
+    }
+
+    private ByteBuffer read(InputStream in) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == input.length) {
+                grow(length + 1);
+            }
+            int count = in.read(input, length, input.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return inputBuffer.clear().limit(length);
+    }
+
+    private ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Class file too large: " + path);
+            }
+            if (size > input.length) {
+                grow((int) size);
+            }
+            ByteBuffer buffer = inputBuffer.clear().limit((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.limit(buffer.position()).position(0);
+        }
+    }
+
+    private void grow(int capacity) {
+        input = Arrays.copyOf(input, Math.max(input.length * 2, capacity));
+        inputBuffer = ByteBuffer.wrap(input);
+    }
+}
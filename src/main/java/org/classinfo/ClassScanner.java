@@ -0,0 +1,439 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ResolvedModule;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ClassScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String JMOD_CLASSES = "classes/";
+    private static final Object END = new Object();
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final int flags;
+    private final SymbolTable symbols;
+    private final ParseMetrics metrics;
+
+    public ClassScanner() {
+        this(ForkJoinPool.commonPool(), 4 * Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    public ClassScanner(Executor executor, int maxInFlight, int flags) {
+        this(executor, maxInFlight, flags, null);
+    }
+
+    public ClassScanner(Executor executor, int maxInFlight, int flags, SymbolTable symbols) {
+        this(executor, maxInFlight, flags, symbols, null);
+    }
+
+    /**
+     * Counts every class parsed by {@link #scan} into {@code metrics}, when it is not null.
+     */
+    public ClassScanner(Executor executor, int maxInFlight, int flags, SymbolTable symbols, ParseMetrics metrics) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.flags = flags;
+        this.symbols = symbols;
+        this.metrics = metrics;
+    }
+
+    public void scan(ModuleLayer layer, Callback callback) throws IOException {
+        scan(layer, new Scan(callback, null));
+    }
+
+    /**
+     * Scans a class directory, or a jar, zip or jmod file. Archives are memory mapped and their entries read straight
+     * from the mapping.
+     */
+    public void scan(Path path, Callback callback) throws IOException {
+        scan(path, new Scan(callback, null));
+    }
+
+    /**
+     * Walks every class of {@code layer} with {@link ClassInfo#accept} and a visitor from {@code visitors}, instead
+     * of building a {@link ClassInfo}. Visitors run in parallel; a class that fails to parse fails the scan. Every
+     * class is read into its own buffer, so a visitor may keep the {@link ClassHeader} it was given.
+     */
+    public void accept(ModuleLayer layer, Supplier<? extends ClassVisitor> visitors) throws IOException {
+        scan(layer, new Scan(null, visitors));
+    }
+
+    public void accept(Path path, Supplier<? extends ClassVisitor> visitors) throws IOException {
+        scan(path, new Scan(null, visitors));
+    }
+
+    private void scan(ModuleLayer layer, Scan scan) throws IOException {
+        List<ModuleReader> readers = new ArrayList<>();
+        try {
+            for (ResolvedModule module : layer.configuration().modules()) {
+                ModuleReader reader = module.reference().open();
+                readers.add(reader);
+                // a visited header reads its constant pool lazily from the buffer, so it keeps the buffer
+                boolean release = scan.visitors == null
+                        && (flags & (ClassInfo.LAZY_POOL | ClassInfo.KEEP_SOURCE)) == 0;
+                Source source = new ModuleSource(reader, release);
+                Iterator<String> names = reader.list().filter(name -> name.endsWith(CLASS_SUFFIX)).iterator();
+                while (names.hasNext() && scan.submit(names.next(), source)) {
+                }
+            }
+        } finally {
+            scan.await();
+            for (ModuleReader reader : readers) {
+                reader.close();
+            }
+        }
+        scan.rethrow();
+    }
+
+    private void scan(Path path, Scan scan) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                Source source = name -> ByteBuffer.wrap(Files.readAllBytes(path.resolve(name)));
+                Iterator<Path> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    Path file = iterator.next();
+                    String name = path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    if (name.endsWith(CLASS_SUFFIX) && Files.isRegularFile(file) && !scan.submit(name, source)) {
+                        break;
+                    }
+                }
+            } finally {
+                scan.await();
+            }
+        } else {
+            String prefix = path.getFileName().toString().endsWith(".jmod") ? JMOD_CLASSES : "";
+            ZipArchive archive = ZipArchive.open(path);
+            if (archive != null) {
+                try {
+                    for (int entry = 0; entry < archive.size(); entry++) {
+                        String name = archive.name(entry);
+                        if (name.startsWith(prefix) && name.endsWith(CLASS_SUFFIX)
+                                && !scan.submit(name.substring(prefix.length()), new ArchiveSource(archive, entry))) {
+                            break;
+                        }
+                    }
+                } finally {
+                    scan.await();
+                }
+                scan.rethrow();
+                return;
+            }
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                try {
+                    Source source = name -> read(zip, prefix + name);
+                    Iterator<? extends ZipEntry> entries = zip.stream().iterator();
+                    while (entries.hasNext()) {
+                        String name = entries.next().getName();
+                        if (name.startsWith(prefix) && name.endsWith(CLASS_SUFFIX)
+                                && !scan.submit(name.substring(prefix.length()), source)) {
+                            break;
+                        }
+                    }
+                } finally {
+                    scan.await();
+                }
+            }
+        }
+        scan.rethrow();
+    }
+
+    /**
+     * Returns the classes of {@code layer} as they are parsed, on a producer thread and the executor. The stream
+     * should be closed, for example with try-with-resources, when it is not fully consumed; an abandoned stream
+     * only stops its scan once it has been garbage collected.
+     */
+    public Stream<ClassInfo> stream(ModuleLayer layer) {
+        return stream(callback -> scan(layer, callback));
+    }
+
+    /**
+     * Returns the classes of a class directory or archive like {@link #stream(ModuleLayer)}, and should be closed
+     * in the same way.
+     */
+    public Stream<ClassInfo> stream(Path path) {
+        return stream(callback -> scan(path, callback));
+    }
+
+    private Stream<ClassInfo> stream(Producer producer) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(maxInFlight);
+        AtomicBoolean closed = new AtomicBoolean();
+        Object consumer = new Object();
+        WeakReference<Object> consuming = new WeakReference<>(consumer);
+        Callback callback = (name, classInfo) -> {
+            try {
+                while (!queue.offer(classInfo, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed.get() || consuming.get() == null) {
+                        throw new CancellationException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        };
+        Thread thread = new Thread(() -> {
+            Object last = END;
+            try {
+                producer.produce(callback);
+            } catch (CancellationException e) {
+                return;
+            } catch (Throwable t) {
+                last = t;
+            }
+            try {
+                while (!queue.offer(last, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed.get() || consuming.get() == null) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "ClassScanner");
+        thread.setDaemon(true);
+        thread.start();
+        Spliterator<ClassInfo> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.NONNULL) {
+            // the producer gives up once the stream, and with it this reference, has been collected
+            private final Object owner = consumer;
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super ClassInfo> action) {
+                if (done) {
+                    return false;
+                }
+                Object next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException();
+                }
+                if (next == END) {
+                    done = true;
+                    return false;
+                }
+                if (next instanceof Throwable) {
+                    done = true;
+                    throw unchecked((Throwable) next);
+                }
+                action.accept((ClassInfo) next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            closed.set(true);
+            queue.clear();
+        });
+    }
+
+    private static ByteBuffer read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            throw new NoSuchFileException(name);
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    private static RuntimeException unchecked(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof IOException) {
+            return new UncheckedIOException((IOException) t);
+        }
+        return new IllegalStateException(t);
+    }
+
+    @FunctionalInterface
+    public interface Callback {
+
+        void accept(String name, ClassInfo classInfo);
+
+        default void failed(String name, Throwable error) {
+            if (error instanceof IOException) {
+                throw new UncheckedIOException(name, (IOException) error);
+            }
+            throw unchecked(error);
+        }
+    }
+
+    private interface Source {
+
+        ByteBuffer open(String name) throws IOException;
+
+        default void release(ByteBuffer buffer) {
+        }
+    }
+
+    private interface Producer {
+
+        void produce(Callback callback) throws IOException;
+    }
+
+    private static final class ModuleSource implements Source {
+
+        private final ModuleReader reader;
+        private final boolean release;
+
+        ModuleSource(ModuleReader reader, boolean release) {
+            this.reader = reader;
+            this.release = release;
+        }
+
+        @Override
+        public ByteBuffer open(String name) throws IOException {
+            return reader.read(name).orElseThrow(() -> new NoSuchFileException(name));
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+            if (release) {
+                reader.release(buffer);
+            }
+        }
+    }
+
+    private static final class ArchiveSource implements Source {
+
+        private final ZipArchive archive;
+        private final int entry;
+
+        ArchiveSource(ZipArchive archive, int entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        @Override
+        public ByteBuffer open(String name) throws IOException {
+            return archive.read(entry);
+        }
+    }
+
+    private final class Scan {
+
+        private final Semaphore permits = new Semaphore(maxInFlight);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Callback callback;
+        private final Supplier<? extends ClassVisitor> visitors;
+
+        Scan(Callback callback, Supplier<? extends ClassVisitor> visitors) {
+            this.callback = callback;
+            this.visitors = visitors;
+        }
+
+        boolean submit(String name, Source source) throws IOException {
+            if (failure.get() != null) {
+                return false;
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            try {
+                executor.execute(() -> run(name, source));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+            return true;
+        }
+
+        private void run(String name, Source source) {
+            try {
+                if (visitors != null) {
+                    ByteBuffer buffer = source.open(name);
+                    try {
+                        ClassInfo.accept(buffer, visitors.get(), flags);
+                    } finally {
+                        source.release(buffer);
+                    }
+                    return;
+                }
+                ClassInfo classInfo;
+                try {
+                    ByteBuffer buffer = source.open(name);
+                    try {
+                        classInfo = ClassInfo.parse(buffer, flags, symbols, metrics);
+                    } finally {
+                        source.release(buffer);
+                    }
+                } catch (IOException | RuntimeException | ClassFormatError e) {
+                    callback.failed(name, e);
+                    return;
+                }
+                callback.accept(name, classInfo);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                permits.release();
+            }
+        }
+
+        void await() throws IOException {
+            try {
+                permits.acquire(maxInFlight);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            permits.release(maxInFlight);
+        }
+
+        void rethrow() throws IOException {
+            Throwable t = failure.get();
+            if (t == null) {
+                return;
+            }
+            if (t instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) t).getCause();
+            }
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            throw unchecked(t);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.classinfo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Removes attributes by name from class files, then drops the UTF8 constants left without a use. Jars and class
+ * directories are streamed entry by entry: classes are stripped in parallel on the executor while the results are
+ * written in source order, and other entries are copied unchanged. Stripping invalidates the signatures of a signed
+ * jar.
+ */
+public class ClassStripper {
+
+    public static final Set<String> DEBUG_ATTRIBUTES = Set.of(AttributeInfo.LINE_NUMBER_TABLE,
+            AttributeInfo.LOCAL_VARIABLE_TABLE, AttributeInfo.LOCAL_VARIABLE_TYPE_TABLE,
+            AttributeInfo.SOURCE_DEBUG_EXTENSION, AttributeInfo.RUNTIME_INVISIBLE_ANNOTATIONS,
+            AttributeInfo.RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS, AttributeInfo.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS,
+            AttributeInfo.DEPRECATED);
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final int FLAGS = ClassInfo.LAZY_POOL | ClassInfo.SKIP_CODE | ClassInfo.SKIP_DEBUG
+            | ClassInfo.SKIP_FRAMES | ClassInfo.SKIP_ANNOTATIONS | ClassInfo.KEEP_SOURCE;
+
+    private final ClassEdits edits = new ClassEdits();
+    private final Executor executor;
+    private final int maxInFlight;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    public ClassStripper() {
+        this(DEBUG_ATTRIBUTES);
+    }
+
+    public ClassStripper(Set<String> attributeNames) {
+        this(attributeNames, ForkJoinPool.commonPool(), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ClassStripper(Set<String> attributeNames, Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        edits.removeAttributes(Set.copyOf(attributeNames)::contains);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Strips one class file. May be called concurrently.
+     */
+    public byte[] strip(ByteBuffer classFile) throws IOException {
+        ClassInfo classInfo = ClassInfo.parse(classFile, FLAGS);
+        Workspace workspace = workspaces.get();
+        ClassWriter writer = workspace.writer;
+        writer.write(classInfo, edits);
+        int length = workspace.compactor.compact(writer.buffer(), writer.length());
+        if (length < 0) {
+            return Arrays.copyOf(writer.buffer(), writer.length());
+        }
+        return Arrays.copyOf(workspace.compactor.output(), length);
+    }
+
+    /**
+     * Strips the classes of a jar or zip file into a new file, or of a directory tree into {@code target}.
+     */
+    public void strip(Path source, Path target) throws IOException {
+        Pipeline pipeline = new Pipeline();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                Iterator<Path> iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    Path file = iterator.next();
+                    if (!Files.isRegularFile(file)) {
+                        continue;
+                    }
+                    Path output = target.resolve(source.relativize(file).toString());
+                    pipeline.submit(file.toString(), Files.readAllBytes(file), isClass(file.toString()), bytes -> {
+                        Files.createDirectories(output.getParent());
+                        Files.write(output, bytes);
+                    });
+                }
+                pipeline.finish();
+            }
+        } else {
+            try (ZipFile zip = new ZipFile(source.toFile());
+                 ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    byte[] bytes;
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        bytes = in.readAllBytes();
+                    }
+                    boolean isClass = !entry.isDirectory() && isClass(entry.getName());
+                    pipeline.submit(entry.getName(), bytes, isClass, result -> write(out, entry, result));
+                }
+                pipeline.finish();
+            }
+        }
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(CLASS_SUFFIX);
+    }
+
+    private static void write(ZipOutputStream out, ZipEntry entry, byte[] bytes) throws IOException {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        copy.setComment(entry.getComment());
+        copy.setExtra(entry.getExtra());
+        if (entry.getMethod() == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            copy.setMethod(ZipEntry.STORED);
+            copy.setSize(bytes.length);
+            copy.setCompressedSize(bytes.length);
+            copy.setCrc(crc.getValue());
+        }
+        out.putNextEntry(copy);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static final class Workspace {
+
+        final ClassWriter writer = new ClassWriter();
+        final ConstantPoolCompactor compactor = new ConstantPoolCompactor();
+    }
+
+    private interface Output {
+
+        void write(byte[] bytes) throws IOException;
+    }
+
+    private static final class Pending {
+
+        final String name;
+        final CompletableFuture<byte[]> result;
+        final Output output;
+
+        Pending(String name, CompletableFuture<byte[]> result, Output output) {
+            this.name = name;
+            this.result = result;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Keeps up to {@code maxInFlight} entries in flight and hands finished ones to their output in submission order.
+     */
+    private final class Pipeline {
+
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+        void submit(String name, byte[] bytes, boolean isClass, Output output) throws IOException {
+            CompletableFuture<byte[]> result = isClass ? CompletableFuture.supplyAsync(() -> {
+                try {
+                    return strip(ByteBuffer.wrap(bytes));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor) : CompletableFuture.completedFuture(bytes);
+            pending.add(new Pending(name, result, output));
+            while (!pending.isEmpty() && (pending.size() >= maxInFlight || pending.peek().result.isDone())) {
+                writeNext();
+            }
+        }
+
+        void finish() throws IOException {
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws IOException {
+            Pending next = pending.remove();
+            byte[] bytes;
+            try {
+                bytes = next.result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                throw new IOException("Cannot strip " + next.name, cause);
+            }
+            next.output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.classinfo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the contents of a class file as {@link ClassInfo#accept} walks it, without building a tree.
+ * <p>
+ * Events arrive in this order: the header, the class attributes, then each field and each method followed by
+ * its own attributes, and finally {@link #visitEnd()}. Buffers handed to a callback are only valid until it
+ * returns.
+ */
+public interface ClassVisitor {
+
+    /**
+     * The header reads its constant pool lazily from the class bytes, so it stays valid only as long as they do:
+     * for as long as the caller of {@link ClassInfo#accept} or {@link ClassScanner#accept} keeps them unchanged, and
+     * only until the next class with {@link ClassParser#accept}.
+     */
+    default void visitHeader(ClassHeader header) {
+    }
+
+    default boolean visitField(int accessFlags, String name, String descriptor) {
+        return true;
+    }
+
+    default boolean visitMethod(int accessFlags, String name, String descriptor) {
+        return true;
+    }
+
+    default boolean visitAttribute(String name, ByteBuffer content) {
+        return true;
+    }
+
+    default void visitCode(int maxStack, int maxLocals, ByteBuffer code) {
+    }
+
+    default void visitTryCatch(int startPc, int endPc, int handlerPc, String catchType) {
+    }
+
+    default void visitAnnotation(AttributeInfo.Annotation annotation, boolean visible) {
+    }
+
+    default void visitParameterAnnotation(int parameter, AttributeInfo.Annotation annotation, boolean visible) {
+    }
+
+    default void visitTypeAnnotation(AttributeInfo.TypeAnnotation annotation, boolean visible) {
+    }
+
+    default void visitEnd() {
+    }
+}
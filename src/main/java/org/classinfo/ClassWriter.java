@@ -0,0 +1,183 @@
+package org.classinfo;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Serializes a {@link ClassInfo} back to class file bytes by copying from the buffer it was parsed from, which
+ * requires {@link ClassInfo#KEEP_SOURCE} and a buffer that has not changed since. {@link ClassEdits} are applied on
+ * the way: access flags are patched in place, and only when attributes are removed are the attribute tables walked,
+ * and then every kept attribute is still copied as is, with just the counts and the lengths of enclosing
+ * {@code Code} and {@code Record} attributes rewritten. Output goes to a growable buffer that is reused across
+ * calls, so a writer is not thread-safe.
+ */
+public final class ClassWriter {
+
+    private byte[] buffer;
+    private int length;
+    private ByteBuffer source;
+    private ConstantPool pool;
+    private Predicate<String> removed;
+
+    public ClassWriter() {
+        this(8192);
+    }
+
+    public ClassWriter(int initialCapacity) {
+        buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Writes {@code classInfo} unchanged and returns a read-only view of the bytes, valid until the next call.
+     */
+    public ByteBuffer write(ClassInfo classInfo) {
+        return write(classInfo, null);
+    }
+
+    /**
+     * Writes {@code classInfo} with {@code edits}, which may be null, and returns a read-only view of the bytes,
+     * valid until the next call.
+     */
+    public ByteBuffer write(ClassInfo classInfo, ClassEdits edits) {
+        if (classInfo.source() == null) {
+            throw new IllegalArgumentException(classInfo.getClassName() + " was parsed without KEEP_SOURCE");
+        }
+        length = 0;
+        source = classInfo.source().duplicate();
+        pool = classInfo.getConstantPool();
+        removed = edits == null ? null : edits.removedAttributes();
+        try {
+            int start = classInfo.start();
+            if (removed == null) {
+                copy(start, classInfo.end() - start);
+                if (edits != null) {
+                    patchShort(classInfo.flagsOffset() - start, edits.accessFlags(classInfo));
+                    for (AbstractInfo member : classInfo.fields()) {
+                        patchShort(member.offset - start, edits.accessFlags(member));
+                    }
+                    for (AbstractInfo member : classInfo.methods()) {
+                        patchShort(member.offset - start, edits.accessFlags(member));
+                    }
+                }
+            } else {
+                copy(start, classInfo.fieldsOffset() - start);
+                patchShort(classInfo.flagsOffset() - start, edits.accessFlags(classInfo));
+                int offset = writeMembers(classInfo.fields(), classInfo.fieldsOffset(), edits);
+                offset = writeMembers(classInfo.methods(), offset, edits);
+                writeAttributes(offset);
+            }
+        } finally {
+            source = null;
+            pool = null;
+            removed = null;
+        }
+        return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray(ClassInfo classInfo) {
+        return toByteArray(classInfo, null);
+    }
+
+    public byte[] toByteArray(ClassInfo classInfo, ClassEdits edits) {
+        write(classInfo, edits);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private int writeMembers(AbstractInfo[] members, int offset, ClassEdits edits) {
+        copy(offset, 2);
+        offset += 2;
+        for (AbstractInfo member : members) {
+            putShort(edits.accessFlags(member));
+            copy(member.offset + 2, 4);
+            offset = writeAttributes(member.offset + 6);
+        }
+        return offset;
+    }
+
+    /**
+     * Copies the attribute table at {@code offset} without the removed attributes and returns the offset after it.
+     */
+    private int writeAttributes(int offset) {
+        int count = source.getShort(offset) & 0xFFFF;
+        int countPosition = length;
+        int kept = 0;
+        putShort(count);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            String name = pool.utf8(source.getShort(offset) & 0xFFFF);
+            int next = offset + 6 + source.getInt(offset + 2);
+            if (removed.test(name)) {
+                offset = next;
+                continue;
+            }
+            kept++;
+            if (name.equals(AttributeInfo.CODE)) {
+                int header = length;
+                copy(offset, 6);
+                int body = offset + 6;
+                int exceptionTable = body + 8 + source.getInt(body + 4);
+                int attributes = exceptionTable + 2 + 8 * (source.getShort(exceptionTable) & 0xFFFF);
+                copy(body, attributes - body);
+                if (writeAttributes(attributes) != next) {
+                    throw new ClassFormatError("Code attribute length does not match its content");
+                }
+                patchInt(header + 2, length - header - 6);
+            } else if (name.equals(AttributeInfo.RECORD)) {
+                int header = length;
+                copy(offset, 8);
+                int component = offset + 8;
+                for (int c = 0, components = source.getShort(offset + 6) & 0xFFFF; c < components; c++) {
+                    copy(component, 4);
+                    component = writeAttributes(component + 4);
+                }
+                if (component != next) {
+                    throw new ClassFormatError("Record attribute length does not match its content");
+                }
+                patchInt(header + 2, length - header - 6);
+            } else {
+                copy(offset, next - offset);
+            }
+            offset = next;
+        }
+        patchShort(countPosition, kept);
+        return offset;
+    }
+
+    private void copy(int offset, int count) {
+        ensure(count);
+        source.position(offset);
+        source.get(buffer, length, count);
+        length += count;
+    }
+
+    private void putShort(int value) {
+        ensure(2);
+        patchShort(length, value);
+        length += 2;
+    }
+
+    private void patchShort(int position, int value) {
+        buffer[position] = (byte) (value >>> 8);
+        buffer[position + 1] = (byte) value;
+    }
+
+    private void patchInt(int position, int value) {
+        patchShort(position, value >>> 16);
+        patchShort(position + 2, value);
+    }
+
+    private void ensure(int count) {
+        if (length + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
 public class Code {
@@ -9,29 +8,61 @@ public class Code {
     private byte[] code;
     private ExceptionTable[] exceptionTable;
     private AttributeInfo[] attributes;
-    private CPInfo[] pool;
+    private ConstantPool pool;
 
-    Code(DataInputStream stream, CPInfo[] pool) throws IOException {
+    Code(ByteReader reader, ConstantPool pool, int flags) throws IOException {
         this.pool = pool;
-        maxStack = stream.readUnsignedShort();
-        maxLocals = stream.readUnsignedShort();
-        int length = stream.readInt();
+        maxStack = reader.readUnsignedShort();
+        maxLocals = reader.readUnsignedShort();
+        int length = reader.readInt();
         if (length <= 0 || length >= 65536) {
             throw new ClassFormatError("Invalid code length: " + length);
         }
         code = new byte[length];
-        if (stream.read(code) != code.length) {
-            throw new ClassFormatError("Could not read Code");
-        }
-        exceptionTable = new ExceptionTable[stream.readUnsignedShort()];
+        reader.readFully(code);
+        exceptionTable = new ExceptionTable[reader.readUnsignedShort()];
         for (int i = 0; i < exceptionTable.length; i++) {
-            ExceptionTable table = new ExceptionTable(stream);
+            ExceptionTable table = new ExceptionTable(reader);
             exceptionTable[i] = table;
         }
-        attributes = new AttributeInfo[stream.readUnsignedShort()];
-        for (int i = 0; i < attributes.length; i++) {
-            attributes[i] = new AttributeInfo(stream, pool);
+        attributes = AttributeInfo.readAttributes(reader, pool, flags);
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    byte[] code() {
+        return code;
+    }
+
+    AttributeInfo[] attributes() {
+        return attributes;
+    }
+
+    ExceptionTable[] exceptionTable() {
+        return exceptionTable;
+    }
+
+    AttributeInfo.StackMapFrame[] stackMapTable() {
+        for (AttributeInfo attribute : attributes) {
+            if (attribute.getStackMapTable() != null) {
+                return attribute.getStackMapTable();
+            }
         }
+        return null;
+    }
+
+    public InstructionCursor instructions() {
+        return new InstructionCursor(this);
     }
 
     void validate() {
@@ -45,7 +76,7 @@ public class Code {
             if (table.handlerPc > code.length) {
                 throw new ClassFormatError("Invalid Handler PC");
             }
-            if (table.catchType != 0 && pool[table.catchType].tag != CPInfo.CLASS) {
+            if (table.catchType != 0 && pool.tag(table.catchType) != CPInfo.CLASS) {
                 throw new ClassFormatError("Invalid CatchType");
             }
         }
@@ -60,11 +91,11 @@ public class Code {
         int handlerPc;
         int catchType;
 
-        ExceptionTable(DataInputStream stream) throws IOException {
-            startPc = stream.readUnsignedShort();
-            endPc = stream.readUnsignedShort();
-            handlerPc = stream.readUnsignedShort();
-            catchType = stream.readUnsignedShort();
+        ExceptionTable(ByteReader reader) throws IOException {
+            startPc = reader.readUnsignedShort();
+            endPc = reader.readUnsignedShort();
+            handlerPc = reader.readUnsignedShort();
+            catchType = reader.readUnsignedShort();
         }
     }
 }
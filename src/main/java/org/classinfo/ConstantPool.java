@@ -0,0 +1,193 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public final class ConstantPool {
+
+    byte[] tags;
+    int[] values;
+    private String[] strings;
+    private int count;
+    private final SymbolTable symbols;
+    private ByteBuffer source;
+
+    ConstantPool(ByteBuffer source, byte[] tags, int[] values, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        this.tags = tags;
+        this.values = values;
+        this.strings = new String[tags.length];
+        this.count = tags.length;
+    }
+
+    /**
+     * Empties this pool for {@code count} entries read from {@code source}, keeping the arrays when they are large
+     * enough. Tags past the new count are cleared so that stale entries read as invalid.
+     */
+    void reset(ByteBuffer source, int count) {
+        if (tags.length < count) {
+            int capacity = Math.max(tags.length * 2, count);
+            tags = new byte[capacity];
+            values = new int[capacity];
+            strings = new String[capacity];
+        } else {
+            Arrays.fill(tags, count, Math.max(this.count, count), (byte) 0);
+            Arrays.fill(strings, 0, Math.max(this.count, count), null);
+        }
+        this.source = source;
+        this.count = count;
+    }
+
+    void decodeAll() throws IOException {
+        for (int i = 1; i < count; i++) {
+            if (tags[i] == CPInfo.UTF8) {
+                strings[i] = decode(i);
+            }
+        }
+        source = null;
+    }
+
+    private String decode(int index) throws IOException {
+        int offset = values[index];
+        int length = source.getShort(offset) & 0xFFFF;
+        if (symbols != null) {
+            return symbols.intern(source, offset + 2, length);
+        }
+        return ByteReader.decodeUTF(source, offset + 2, length);
+    }
+
+    boolean isDecodable(int index) {
+        try {
+            utf8(index);
+            return true;
+        } catch (ClassFormatError e) {
+            return false;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int tag(int index) {
+        return tags[index];
+    }
+
+    public String utf8(int index) {
+        if (tags[index] != CPInfo.UTF8) {
+            throw new ClassFormatError("Not a UTF8 entry: #" + index);
+        }
+        String string = strings[index];
+        if (string == null) {
+            try {
+                string = decode(index);
+            } catch (IOException e) {
+                throw new ClassFormatError("Malformed UTF8 entry #" + index + ": " + e.getMessage());
+            }
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    public int intValue(int index) {
+        return values[index];
+    }
+
+    public float floatValue(int index) {
+        return Float.intBitsToFloat(values[index]);
+    }
+
+    public long longValue(int index) {
+        return (long) values[index] << 32 | values[index + 1] & 0xFFFFFFFFL;
+    }
+
+    public double doubleValue(int index) {
+        return Double.longBitsToDouble(longValue(index));
+    }
+
+    public int stringIndex(int index) {
+        return values[index];
+    }
+
+    public int nameIndex(int index) {
+        return tags[index] == CPInfo.NAME_AND_TYPE ? values[index] >>> 16 : values[index];
+    }
+
+    public int descriptorIndex(int index) {
+        return tags[index] == CPInfo.NAME_AND_TYPE ? values[index] & 0xFFFF : values[index];
+    }
+
+    public int classIndex(int index) {
+        return values[index] >>> 16;
+    }
+
+    public int nameAndTypeIndex(int index) {
+        return values[index] & 0xFFFF;
+    }
+
+    public int bootstrapMethodIndex(int index) {
+        return values[index] >>> 16;
+    }
+
+    public int referenceKind(int index) {
+        return values[index] >>> 16;
+    }
+
+    public int referenceIndex(int index) {
+        return values[index] & 0xFFFF;
+    }
+
+    public String className(int index) {
+        return utf8(nameIndex(index));
+    }
+
+    public String name(int index) {
+        return utf8(nameIndex(index));
+    }
+
+    public String descriptor(int index) {
+        return utf8(descriptorIndex(index));
+    }
+
+    public String nameAndType(int index) {
+        return Utils.getSignature(name(index), descriptor(index));
+    }
+
+    public String toString(int index) {
+        switch (tags[index]) {
+            case CPInfo.UTF8:
+                return utf8(index);
+            case CPInfo.INTEGER:
+                return String.valueOf(intValue(index));
+            case CPInfo.FLOAT:
+                return String.valueOf(floatValue(index));
+            case CPInfo.LONG:
+                return String.valueOf(longValue(index));
+            case CPInfo.DOUBLE:
+                return String.valueOf(doubleValue(index));
+            case CPInfo.STRING:
+                return utf8(stringIndex(index));
+            case CPInfo.CLASS:
+            case CPInfo.MODULE:
+            case CPInfo.PACKAGE:
+                return className(index);
+            case CPInfo.FIELD_REF:
+            case CPInfo.METHOD_REF:
+            case CPInfo.INTERFACE_METHOD_REF:
+                return className(classIndex(index)) + nameAndType(nameAndTypeIndex(index));
+            case CPInfo.NAME_AND_TYPE:
+                return nameAndType(index);
+            case CPInfo.METHOD_HANDLE:
+                return toString(referenceIndex(index));
+            case CPInfo.METHOD_TYPE:
+                return descriptor(index);
+            case CPInfo.DYNAMIC:
+            case CPInfo.INVOKE_DYNAMIC:
+                return "#" + bootstrapMethodIndex(index) + ':' + nameAndType(nameAndTypeIndex(index));
+            default:
+                return String.valueOf(tags[index]);
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package org.classinfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.classinfo.Opcodes.*;
+
+/**
+ * Drops the UTF8 constants nothing in a class file refers to and renumbers the remaining ones. Every constant pool
+ * index is located first, in the pool, the header, the members, the instructions and every attribute the JVMS
+ * defines; a class carrying an attribute this walk does not know is left alone, as the attribute may hold indexes.
+ * Kept constants stay in order, so indexes only shrink and {@code ldc} operands still fit in a byte. Instances reuse
+ * their scratch arrays and are not thread-safe.
+ */
+final class ConstantPoolCompactor {
+
+    private static final String PERMITTED_SUBCLASSES = "PermittedSubclasses";
+
+    private byte[] in;
+    private int limit;
+    private int[] entries = new int[256];
+    private boolean[] used = new boolean[256];
+    private int[] remap = new int[256];
+    private String[] names = new String[256];
+    private int[] references = new int[1024];
+    private int referenceCount;
+    private boolean unknown;
+    private byte[] code = new byte[1024];
+    private final InstructionCursor cursor = new InstructionCursor();
+    private byte[] out = new byte[8192];
+
+    /**
+     * Compacts the class file in {@code bytes[0, length)}. Returns the new length, with the bytes in
+     * {@link #output()}, or -1 if there is nothing to drop or the class has an unknown attribute.
+     */
+    int compact(byte[] bytes, int length) {
+        in = bytes;
+        limit = length;
+        referenceCount = 0;
+        unknown = false;
+        try {
+            int count = u2(8);
+            if (entries.length < count) {
+                int size = Math.max(count, entries.length * 2);
+                entries = new int[size];
+                used = new boolean[size];
+                remap = new int[size];
+                names = new String[size];
+            }
+            Arrays.fill(used, 0, count, false);
+            Arrays.fill(names, 0, count, null);
+            int poolEnd = readPool(count);
+            int p = poolEnd;
+            reference(p + 2);
+            reference(p + 4);
+            int interfaces = u2(p + 6);
+            p += 8;
+            for (int i = 0; i < interfaces; i++, p += 2) {
+                reference(p);
+            }
+            p = readMembers(p);
+            p = readMembers(p);
+            p = readAttributes(p);
+            if (p != length) {
+                throw new ClassFormatError("Class file length does not match its content");
+            }
+            if (unknown) {
+                return -1;
+            }
+            for (int r = 0; r < referenceCount; r++) {
+                int position = references[r];
+                int index = position < 0 ? in[~position] & 0xFF : u2(position);
+                if (index >= count) {
+                    throw new ClassFormatError("Invalid constant pool index #" + index);
+                }
+                used[index] = true;
+            }
+            int next = 1;
+            for (int i = 1; i < count; i++) {
+                int tag = in[entries[i]];
+                if (tag == CPInfo.UTF8 && !used[i]) {
+                    remap[i] = 0;
+                } else {
+                    remap[i] = next++;
+                    if (tag == CPInfo.LONG || tag == CPInfo.DOUBLE) {
+                        remap[++i] = next++;
+                    }
+                }
+            }
+            if (next == count) {
+                return -1;
+            }
+            return write(count, next, poolEnd, length);
+        } finally {
+            in = null;
+        }
+    }
+
+    byte[] output() {
+        return out;
+    }
+
+    private int readPool(int count) {
+        int p = 10;
+        for (int i = 1; i < count; i++) {
+            entries[i] = p;
+            int tag = in[p];
+            switch (tag) {
+                case CPInfo.UTF8:
+                    p += 3 + u2(p + 1);
+                    break;
+                case CPInfo.INTEGER:
+                case CPInfo.FLOAT:
+                    p += 5;
+                    break;
+                case CPInfo.LONG:
+                case CPInfo.DOUBLE:
+                    p += 9;
+                    entries[++i] = -1;
+                    break;
+                case CPInfo.CLASS:
+                case CPInfo.STRING:
+                case CPInfo.METHOD_TYPE:
+                case CPInfo.MODULE:
+                case CPInfo.PACKAGE:
+                    use(u2(p + 1), count);
+                    p += 3;
+                    break;
+                case CPInfo.FIELD_REF:
+                case CPInfo.METHOD_REF:
+                case CPInfo.INTERFACE_METHOD_REF:
+                case CPInfo.NAME_AND_TYPE:
+                    use(u2(p + 1), count);
+                    use(u2(p + 3), count);
+                    p += 5;
+                    break;
+                case CPInfo.DYNAMIC:
+                case CPInfo.INVOKE_DYNAMIC:
+                    use(u2(p + 3), count);
+                    p += 5;
+                    break;
+                case CPInfo.METHOD_HANDLE:
+                    use(u2(p + 2), count);
+                    p += 4;
+                    break;
+                default:
+                    throw new ClassFormatError("Invalid constant pool tag " + tag + " at #" + i);
+            }
+        }
+        return p;
+    }
+
+    private void use(int index, int count) {
+        if (index >= count) {
+            throw new ClassFormatError("Invalid constant pool index #" + index);
+        }
+        used[index] = true;
+    }
+
+    private int readMembers(int p) {
+        int count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            reference(p + 2);
+            reference(p + 4);
+            p = readAttributes(p + 6);
+        }
+        return p;
+    }
+
+    private int readAttributes(int p) {
+        int count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            reference(p);
+            int body = p + 6;
+            int end = body + u4(p + 2);
+            if (end > limit || end < body) {
+                throw new ClassFormatError("Attribute runs past the end of the class file");
+            }
+            readAttribute(name(u2(p)), body);
+            p = end;
+        }
+        return p;
+    }
+
+    private void readAttribute(String name, int p) {
+        int count;
+        switch (name) {
+            case AttributeInfo.CONSTANT_VALUE:
+            case AttributeInfo.SIGNATURE:
+            case AttributeInfo.SOURCE_FILE:
+            case AttributeInfo.MODULE_MAIN_CLASS:
+            case AttributeInfo.NEST_HOST:
+                reference(p);
+                break;
+            case AttributeInfo.CODE:
+                readCode(p);
+                break;
+            case AttributeInfo.STACK_MAP_TABLE:
+                readStackMapTable(p);
+                break;
+            case AttributeInfo.EXCEPTIONS:
+            case AttributeInfo.MODULE_PACKAGE:
+            case AttributeInfo.NEST_MEMBERS:
+            case PERMITTED_SUBCLASSES:
+                references(p + 2, u2(p));
+                break;
+            case AttributeInfo.INNER_CLASSES:
+                count = u2(p);
+                for (int i = 0, e = p + 2; i < count; i++, e += 8) {
+                    reference(e);
+                    reference(e + 2);
+                    reference(e + 4);
+                }
+                break;
+            case AttributeInfo.ENCLOSING_METHOD:
+                reference(p);
+                reference(p + 2);
+                break;
+            case AttributeInfo.SYNTHETIC:
+            case AttributeInfo.DEPRECATED:
+            case AttributeInfo.SOURCE_DEBUG_EXTENSION:
+            case AttributeInfo.LINE_NUMBER_TABLE:
+                break;
+            case AttributeInfo.LOCAL_VARIABLE_TABLE:
+            case AttributeInfo.LOCAL_VARIABLE_TYPE_TABLE:
+                count = u2(p);
+                for (int i = 0, e = p + 2; i < count; i++, e += 10) {
+                    reference(e + 4);
+                    reference(e + 6);
+                }
+                break;
+            case AttributeInfo.RUNTIME_VISIBLE_ANNOTATIONS:
+            case AttributeInfo.RUNTIME_INVISIBLE_ANNOTATIONS:
+                readAnnotations(p);
+                break;
+            case AttributeInfo.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS:
+            case AttributeInfo.RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS:
+                count = in[p] & 0xFF;
+                p++;
+                for (int i = 0; i < count; i++) {
+                    p = readAnnotations(p);
+                }
+                break;
+            case AttributeInfo.RUNTIME_VISIBLE_TYPE_ANNOTATIONS:
+            case AttributeInfo.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS:
+                count = u2(p);
+                p += 2;
+                for (int i = 0; i < count; i++) {
+                    p = readTypeAnnotation(p);
+                }
+                break;
+            case AttributeInfo.ANNOTATION_DEFAULT:
+                readElementValue(p);
+                break;
+            case AttributeInfo.BOOTSTRAP_METHODS:
+                count = u2(p);
+                p += 2;
+                for (int i = 0; i < count; i++) {
+                    reference(p);
+                    int arguments = u2(p + 2);
+                    references(p + 4, arguments);
+                    p += 4 + 2 * arguments;
+                }
+                break;
+            case AttributeInfo.METHOD_PARAMETERS:
+                count = in[p] & 0xFF;
+                for (int i = 0, e = p + 1; i < count; i++, e += 4) {
+                    reference(e);
+                }
+                break;
+            case AttributeInfo.MODULE:
+                readModule(p);
+                break;
+            case AttributeInfo.RECORD:
+                count = u2(p);
+                p += 2;
+                for (int i = 0; i < count; i++) {
+                    reference(p);
+                    reference(p + 2);
+                    p = readAttributes(p + 4);
+                }
+                break;
+            default:
+                unknown = true;
+                break;
+        }
+    }
+
+    private void readCode(int p) {
+        int length = u4(p + 4);
+        int start = p + 8;
+        if (code.length < length) {
+            code = new byte[Math.max(length, code.length * 2)];
+        }
+        System.arraycopy(in, start, code, 0, length);
+        cursor.reset(code, length);
+        while (cursor.next()) {
+            int opcode = cursor.opcode();
+            if (opcode == LDC) {
+                reference(~(start + cursor.pc() + 1));
+            } else if (opcode == LDC_W || opcode == LDC2_W || opcode >= GETSTATIC && opcode <= INVOKEDYNAMIC
+                    || opcode == NEW || opcode == ANEWARRAY || opcode == CHECKCAST || opcode == INSTANCEOF
+                    || opcode == MULTIANEWARRAY) {
+                reference(start + cursor.pc() + 1);
+            }
+        }
+        int table = start + length;
+        int count = u2(table);
+        for (int i = 0; i < count; i++) {
+            reference(table + 8 + 8 * i);
+        }
+        readAttributes(table + 2 + 8 * count);
+    }
+
+    private void readStackMapTable(int p) {
+        int count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            int type = in[p++] & 0xFF;
+            if (type >= AttributeInfo.StackMapFrame.SAME_LOCALS_1_STACK_ITEM_MIN
+                    && type <= AttributeInfo.StackMapFrame.SAME_LOCALS_1_STACK_ITEM_MAX) {
+                p = readVerificationType(p);
+            } else if (type == AttributeInfo.StackMapFrame.SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
+                p = readVerificationType(p + 2);
+            } else if (type >= AttributeInfo.StackMapFrame.CHOP_MIN
+                    && type <= AttributeInfo.StackMapFrame.SAME_FRAME_EXTENDED) {
+                p += 2;
+            } else if (type >= AttributeInfo.StackMapFrame.APPEND_MIN
+                    && type <= AttributeInfo.StackMapFrame.APPEND_MAX) {
+                p += 2;
+                for (int j = AttributeInfo.StackMapFrame.SAME_FRAME_EXTENDED; j < type; j++) {
+                    p = readVerificationType(p);
+                }
+            } else if (type == AttributeInfo.StackMapFrame.FULL_FRAME) {
+                int locals = u2(p + 2);
+                p += 4;
+                for (int j = 0; j < locals; j++) {
+                    p = readVerificationType(p);
+                }
+                int stack = u2(p);
+                p += 2;
+                for (int j = 0; j < stack; j++) {
+                    p = readVerificationType(p);
+                }
+            } else if (type > AttributeInfo.StackMapFrame.SAME_MAX) {
+                throw new ClassFormatError("invalid stack_map_frame");
+            }
+        }
+    }
+
+    private int readVerificationType(int p) {
+        int tag = in[p];
+        if (tag == AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Object) {
+            reference(p + 1);
+            return p + 3;
+        }
+        return tag == AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Uninitialized ? p + 3 : p + 1;
+    }
+
+    private int readAnnotations(int p) {
+        int count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            p = readAnnotation(p);
+        }
+        return p;
+    }
+
+    private int readAnnotation(int p) {
+        reference(p);
+        int count = u2(p + 2);
+        p += 4;
+        for (int i = 0; i < count; i++) {
+            reference(p);
+            p = readElementValue(p + 2);
+        }
+        return p;
+    }
+
+    private int readElementValue(int p) {
+        char tag = (char) (in[p] & 0xFF);
+        switch (tag) {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+            case 'c':
+                reference(p + 1);
+                return p + 3;
+            case 'e':
+                reference(p + 1);
+                reference(p + 3);
+                return p + 5;
+            case '@':
+                return readAnnotation(p + 1);
+            case '[':
+                int count = u2(p + 1);
+                p += 3;
+                for (int i = 0; i < count; i++) {
+                    p = readElementValue(p);
+                }
+                return p;
+            default:
+                throw new ClassFormatError("Invalid element value tag " + tag);
+        }
+    }
+
+    private int readTypeAnnotation(int p) {
+        int targetType = in[p++] & 0xFF;
+        switch (targetType) {
+            case 0x00:
+            case 0x01:
+            case 0x16:
+                p += 1;
+                break;
+            case 0x10:
+            case 0x11:
+            case 0x12:
+            case 0x17:
+            case 0x42:
+            case 0x43:
+            case 0x44:
+            case 0x45:
+            case 0x46:
+                p += 2;
+                break;
+            case 0x13:
+            case 0x14:
+            case 0x15:
+                break;
+            case 0x40:
+            case 0x41:
+                p += 2 + 6 * u2(p);
+                break;
+            case 0x47:
+            case 0x48:
+            case 0x49:
+            case 0x4A:
+            case 0x4B:
+                p += 3;
+                break;
+            default:
+                throw new ClassFormatError("Invalid type annotation target " + targetType);
+        }
+        p += 1 + 2 * (in[p] & 0xFF);
+        return readAnnotation(p);
+    }
+
+    private void readModule(int p) {
+        reference(p);
+        reference(p + 4);
+        int count = u2(p + 6);
+        p += 8;
+        for (int i = 0; i < count; i++, p += 6) {
+            reference(p);
+            reference(p + 4);
+        }
+        for (int k = 0; k < 2; k++) {
+            count = u2(p);
+            p += 2;
+            for (int i = 0; i < count; i++) {
+                reference(p);
+                int targets = u2(p + 4);
+                references(p + 6, targets);
+                p += 6 + 2 * targets;
+            }
+        }
+        count = u2(p);
+        references(p + 2, count);
+        p += 2 + 2 * count;
+        count = u2(p);
+        p += 2;
+        for (int i = 0; i < count; i++) {
+            reference(p);
+            int implementations = u2(p + 2);
+            references(p + 4, implementations);
+            p += 4 + 2 * implementations;
+        }
+    }
+
+    private int write(int count, int newCount, int poolEnd, int length) {
+        int dropped = 0;
+        for (int i = 1; i < count; i++) {
+            if (remap[i] == 0) {
+                dropped += 3 + u2(entries[i] + 1);
+            }
+        }
+        int size = length - dropped;
+        if (out.length < size) {
+            out = new byte[Math.max(size, out.length * 2)];
+        }
+        System.arraycopy(in, 0, out, 0, 8);
+        put2(8, newCount);
+        int o = 10;
+        for (int i = 1; i < count; i++) {
+            if (remap[i] == 0) {
+                continue;
+            }
+            int p = entries[i];
+            int tag = in[p];
+            int end = i + 1 < count ? entries[i + 1] : poolEnd;
+            if (tag == CPInfo.LONG || tag == CPInfo.DOUBLE) {
+                end = p + 9;
+                i++;
+            }
+            System.arraycopy(in, p, out, o, end - p);
+            switch (tag) {
+                case CPInfo.CLASS:
+                case CPInfo.STRING:
+                case CPInfo.METHOD_TYPE:
+                case CPInfo.MODULE:
+                case CPInfo.PACKAGE:
+                    put2(o + 1, remap[u2(p + 1)]);
+                    break;
+                case CPInfo.FIELD_REF:
+                case CPInfo.METHOD_REF:
+                case CPInfo.INTERFACE_METHOD_REF:
+                case CPInfo.NAME_AND_TYPE:
+                    put2(o + 1, remap[u2(p + 1)]);
+                    put2(o + 3, remap[u2(p + 3)]);
+                    break;
+                case CPInfo.DYNAMIC:
+                case CPInfo.INVOKE_DYNAMIC:
+                    put2(o + 3, remap[u2(p + 3)]);
+                    break;
+                case CPInfo.METHOD_HANDLE:
+                    put2(o + 2, remap[u2(p + 2)]);
+                    break;
+            }
+            o += end - p;
+        }
+        System.arraycopy(in, poolEnd, out, o, length - poolEnd);
+        int shift = poolEnd - o;
+        for (int r = 0; r < referenceCount; r++) {
+            int position = references[r];
+            if (position < 0) {
+                out[~position - shift] = (byte) remap[in[~position] & 0xFF];
+            } else {
+                put2(position - shift, remap[u2(position)]);
+            }
+        }
+        return size;
+    }
+
+    private String name(int index) {
+        String name = names[index];
+        if (name == null) {
+            int p = index > 0 && index < u2(8) ? entries[index] : -1;
+            if (p < 0 || in[p] != CPInfo.UTF8) {
+                throw new ClassFormatError("Not a UTF8 entry: #" + index);
+            }
+            name = new String(in, p + 3, u2(p + 1), StandardCharsets.ISO_8859_1);
+            names[index] = name;
+        }
+        return name;
+    }
+
+    private void reference(int position) {
+        if (referenceCount == references.length) {
+            references = Arrays.copyOf(references, referenceCount * 2);
+        }
+        references[referenceCount++] = position;
+    }
+
+    private void references(int position, int count) {
+        for (int i = 0; i < count; i++) {
+            reference(position + 2 * i);
+        }
+    }
+
+    private int u2(int p) {
+        return (in[p] & 0xFF) << 8 | in[p + 1] & 0xFF;
+    }
+
+    private int u4(int p) {
+        return u2(p) << 16 | u2(p + 2);
+    }
+
+    private void put2(int p, int value) {
+        out[p] = (byte) (value >>> 8);
+        out[p + 1] = (byte) value;
+    }
+}
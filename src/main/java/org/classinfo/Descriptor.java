@@ -0,0 +1,246 @@
+package org.classinfo;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A parsed field or method descriptor. Each type is kept as a {@code start << 16 | end} range into the descriptor
+ * string, and the Java source rendering is computed once. Instances are shared through {@link #of}.
+ */
+public final class Descriptor {
+
+    private static final int MAX_CACHED = 1 << 16;
+    private static final ConcurrentMap<String, Descriptor> CACHE = new ConcurrentHashMap<>();
+    private static final int[] NO_TYPES = new int[0];
+
+    private final String descriptor;
+    private final int[] parameters;
+    private final int type;
+    private final int parameterSlots;
+    private final String javaParameters;
+    private final String javaType;
+
+    private Descriptor(String descriptor) {
+        this.descriptor = descriptor;
+        if (descriptor.isEmpty()) {
+            throw new RuntimeException("Invalid Description: empty");
+        }
+        if (descriptor.charAt(0) == '(') {
+            int[] types = new int[8];
+            int count = 0;
+            int slots = 0;
+            int offset = 1;
+            while (offset < descriptor.length() && descriptor.charAt(offset) != ')') {
+                int end = scan(descriptor, offset);
+                if (count == types.length) {
+                    types = Arrays.copyOf(types, count * 2);
+                }
+                types[count++] = offset << 16 | end;
+                char c = descriptor.charAt(offset);
+                slots += c == 'J' || c == 'D' ? 2 : 1;
+                offset = end;
+            }
+            if (offset >= descriptor.length()) {
+                throw new RuntimeException("Invalid Description: missing )");
+            }
+            this.parameters = count == 0 ? NO_TYPES : Arrays.copyOf(types, count);
+            this.parameterSlots = slots;
+            offset++;
+            this.type = offset << 16 | scan(descriptor, offset);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                render(sb, parameters[i]);
+            }
+            this.javaParameters = sb.toString();
+        } else {
+            this.parameters = null;
+            this.parameterSlots = 0;
+            this.type = scan(descriptor, 0);
+            this.javaParameters = null;
+        }
+        if ((type & 0xFFFF) != descriptor.length()) {
+            throw new RuntimeException("Invalid Description: trailing " + descriptor.substring(type & 0xFFFF));
+        }
+        this.javaType = render(new StringBuilder(), type).toString();
+    }
+
+    public static Descriptor of(String descriptor) {
+        Descriptor parsed = CACHE.get(descriptor);
+        if (parsed == null) {
+            parsed = new Descriptor(descriptor);
+            if (CACHE.size() < MAX_CACHED) {
+                Descriptor existing = CACHE.putIfAbsent(descriptor, parsed);
+                if (existing != null) {
+                    parsed = existing;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    private static int scan(String descriptor, int offset) {
+        int start = offset;
+        while (offset < descriptor.length() && descriptor.charAt(offset) == '[') {
+            offset++;
+        }
+        if (offset >= descriptor.length()) {
+            throw new RuntimeException("Invalid Description: " + descriptor.substring(start));
+        }
+        char c = descriptor.charAt(offset);
+        switch (c) {
+            case 'L':
+                int end = descriptor.indexOf(';', offset + 1);
+                if (end < 0) {
+                    throw new RuntimeException("Invalid Description: " + descriptor.substring(offset));
+                }
+                return end + 1;
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 'V':
+                return offset + 1;
+            default:
+                throw new RuntimeException("Invalid Description: " + c);
+        }
+    }
+
+    private StringBuilder render(StringBuilder sb, int range) {
+        int start = range >>> 16;
+        int end = range & 0xFFFF;
+        int base = start;
+        while (descriptor.charAt(base) == '[') {
+            base++;
+        }
+        char c = descriptor.charAt(base);
+        if (c == 'L') {
+            for (int i = base + 1; i < end - 1; i++) {
+                char ch = descriptor.charAt(i);
+                sb.append(ch == '/' ? '.' : ch);
+            }
+        } else {
+            sb.append(primitive(c));
+        }
+        for (int i = start; i < base; i++) {
+            sb.append("[]");
+        }
+        return sb;
+    }
+
+    private static String primitive(char c) {
+        switch (c) {
+            case 'B':
+                return "byte";
+            case 'C':
+                return "char";
+            case 'D':
+                return "double";
+            case 'F':
+                return "float";
+            case 'I':
+                return "int";
+            case 'J':
+                return "long";
+            case 'S':
+                return "short";
+            case 'Z':
+                return "boolean";
+            default:
+                return "void";
+        }
+    }
+
+    public boolean isMethod() {
+        return parameters != null;
+    }
+
+    public int getParameterCount() {
+        return parameters == null ? 0 : parameters.length;
+    }
+
+    /**
+     * Returns the number of local variable slots taken by the parameters, counting {@code long} and
+     * {@code double} as two.
+     */
+    public int getParameterSlots() {
+        return parameterSlots;
+    }
+
+    /**
+     * Returns the descriptor character of the element type of parameter {@code index}, e.g. {@code 'I'} or
+     * {@code 'L'}.
+     */
+    public char getParameterSort(int index) {
+        return sort(parameters[index]);
+    }
+
+    public int getParameterDimensions(int index) {
+        return dimensions(parameters[index]);
+    }
+
+    public String getParameterDescriptor(int index) {
+        return descriptor.substring(parameters[index] >>> 16, parameters[index] & 0xFFFF);
+    }
+
+    /**
+     * Returns the descriptor character of the field type or, for a method, of the return type.
+     */
+    public char getSort() {
+        return sort(type);
+    }
+
+    public int getDimensions() {
+        return dimensions(type);
+    }
+
+    public String getTypeDescriptor() {
+        return descriptor.substring(type >>> 16, type & 0xFFFF);
+    }
+
+    private char sort(int range) {
+        return descriptor.charAt((range >>> 16) + dimensions(range));
+    }
+
+    private int dimensions(int range) {
+        int start = range >>> 16;
+        int offset = start;
+        while (descriptor.charAt(offset) == '[') {
+            offset++;
+        }
+        return offset - start;
+    }
+
+    /**
+     * Returns the Java source form of the parameter list, e.g. {@code "int, java.lang.String[]"}.
+     */
+    public String getJavaParameters() {
+        return javaParameters;
+    }
+
+    /**
+     * Returns the Java source form of the field type or return type.
+     */
+    public String getJavaType() {
+        return javaType;
+    }
+
+    public String toSignature(String name) {
+        if (parameters == null) {
+            return javaType + ' ' + name;
+        }
+        return javaType + ' ' + name + '(' + javaParameters + ')';
+    }
+
+    @Override
+    public String toString() {
+        return descriptor;
+    }
+}
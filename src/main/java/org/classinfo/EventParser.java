@@ -0,0 +1,191 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+final class EventParser {
+
+    private final ConstantPool reusablePool;
+    private ByteReader reader;
+    private ByteBuffer viewSource;
+    private ByteBuffer view;
+    private ClassVisitor visitor;
+    private int flags;
+    private ConstantPool pool;
+
+    /**
+     * Creates a parser that may be used for many classes, one at a time. With {@code reusablePool} every class
+     * reads its constant pool into that pool rather than a new one.
+     */
+    EventParser(ConstantPool reusablePool) {
+        this.reusablePool = reusablePool;
+    }
+
+    void parse(ByteBuffer buffer, ClassVisitor visitor, int flags) throws IOException {
+        if (reader == null) {
+            reader = new ByteReader(buffer);
+        } else {
+            reader.reset(buffer);
+        }
+        if (reader.buffer() != viewSource) {
+            viewSource = reader.buffer();
+            view = viewSource.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+        }
+        this.visitor = visitor;
+        this.flags = flags;
+        try {
+            parse();
+        } finally {
+            this.visitor = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * Drops the buffer read last.
+     */
+    void reset() {
+        reader = null;
+        viewSource = null;
+        view = null;
+    }
+
+    private void parse() throws IOException {
+        ClassHeader header = new ClassHeader(reader, flags | ClassInfo.LAZY_POOL, null, reusablePool);
+        pool = header.pool;
+        visitor.visitHeader(header);
+        int members = reader.position();
+        skipMembers();
+        skipMembers();
+        readAttributes();
+        if (reader.hasRemaining()) {
+            throw new ClassFormatError("Additional bytes found at the end of the stream");
+        }
+        int end = reader.position();
+        reader.position(members);
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int accessFlags = reader.readUnsignedShort();
+            String name = pool.utf8(reader.readUnsignedShort());
+            String descriptor = pool.utf8(reader.readUnsignedShort());
+            if (visitor.visitField(accessFlags, name, descriptor)) {
+                readAttributes();
+            } else {
+                skipAttributes();
+            }
+        }
+        count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int accessFlags = reader.readUnsignedShort();
+            String name = pool.utf8(reader.readUnsignedShort());
+            String descriptor = pool.utf8(reader.readUnsignedShort());
+            if (visitor.visitMethod(accessFlags, name, descriptor)) {
+                readAttributes();
+            } else {
+                skipAttributes();
+            }
+        }
+        reader.position(end);
+        visitor.visitEnd();
+    }
+
+    private void skipMembers() throws IOException {
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            reader.skip(6);
+            skipAttributes();
+        }
+    }
+
+    private void skipAttributes() throws IOException {
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            reader.skip(2);
+            reader.skip(reader.readInt());
+        }
+    }
+
+    private void readAttributes() throws IOException {
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String name = pool.utf8(reader.readUnsignedShort());
+            int length = reader.readInt();
+            int start = reader.position();
+            reader.skip(length);
+            if (AttributeInfo.isSkipped(name, flags) || !visitor.visitAttribute(name, slice(start, length))) {
+                continue;
+            }
+            reader.position(start);
+            switch (name) {
+                case AttributeInfo.CODE:
+                    readCode();
+                    break;
+                case AttributeInfo.RUNTIME_VISIBLE_ANNOTATIONS:
+                case AttributeInfo.RUNTIME_INVISIBLE_ANNOTATIONS:
+                    readAnnotations(AttributeInfo.RUNTIME_VISIBLE_ANNOTATIONS.equals(name));
+                    break;
+                case AttributeInfo.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS:
+                case AttributeInfo.RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS:
+                    readParameterAnnotations(AttributeInfo.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS.equals(name));
+                    break;
+                case AttributeInfo.RUNTIME_VISIBLE_TYPE_ANNOTATIONS:
+                case AttributeInfo.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS:
+                    readTypeAnnotations(AttributeInfo.RUNTIME_VISIBLE_TYPE_ANNOTATIONS.equals(name));
+                    break;
+            }
+            reader.position(start + length);
+        }
+    }
+
+    private ByteBuffer slice(int start, int length) {
+        view.limit(start + length);
+        view.position(start);
+        return view;
+    }
+
+    private void readCode() throws IOException {
+        int maxStack = reader.readUnsignedShort();
+        int maxLocals = reader.readUnsignedShort();
+        int length = reader.readInt();
+        if (length <= 0 || length >= 65536) {
+            throw new ClassFormatError("Invalid code length: " + length);
+        }
+        int start = reader.position();
+        reader.skip(length);
+        visitor.visitCode(maxStack, maxLocals, slice(start, length));
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int startPc = reader.readUnsignedShort();
+            int endPc = reader.readUnsignedShort();
+            int handlerPc = reader.readUnsignedShort();
+            int catchType = reader.readUnsignedShort();
+            visitor.visitTryCatch(startPc, endPc, handlerPc, catchType == 0 ? null : pool.className(catchType));
+        }
+        readAttributes();
+    }
+
+    private void readAnnotations(boolean visible) throws IOException {
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            visitor.visitAnnotation(new AttributeInfo.Annotation(reader, pool), visible);
+        }
+    }
+
+    private void readParameterAnnotations(boolean visible) throws IOException {
+        int parameters = reader.readUnsignedByte();
+        for (int parameter = 0; parameter < parameters; parameter++) {
+            int count = reader.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                visitor.visitParameterAnnotation(parameter, new AttributeInfo.Annotation(reader, pool), visible);
+            }
+        }
+    }
+
+    private void readTypeAnnotations(boolean visible) throws IOException {
+        int count = reader.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            visitor.visitTypeAnnotation(AttributeInfo.TypeAnnotation.read(reader, pool), visible);
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
 public class FieldInfo extends AbstractInfo {
 
-    FieldInfo(DataInputStream stream, CPInfo[] pool) throws IOException {
-        super(stream, pool);
+    FieldInfo(ByteReader reader, ConstantPool pool, int flags) throws IOException {
+        super(reader, pool, flags);
     }
 
     @Override
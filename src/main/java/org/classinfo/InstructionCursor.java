@@ -0,0 +1,245 @@
+package org.classinfo;
+
+import static org.classinfo.Opcodes.*;
+
+/**
+ * Steps through the instructions of a method body in place. All accessors return primitives read straight from
+ * the code array, so walking a method allocates nothing; {@link #reset} reuses a cursor for the next method.
+ */
+public final class InstructionCursor {
+
+    private static final byte[] LENGTHS = new byte[256];
+
+    static {
+        for (int opcode = NOP; opcode <= JSR_W; opcode++) {
+            LENGTHS[opcode] = 1;
+        }
+        for (int opcode : new int[] {BIPUSH, LDC, ILOAD, LLOAD, FLOAD, DLOAD, ALOAD, ISTORE, LSTORE, FSTORE,
+                DSTORE, ASTORE, RET, NEWARRAY}) {
+            LENGTHS[opcode] = 2;
+        }
+        for (int opcode = IFEQ; opcode <= JSR; opcode++) {
+            LENGTHS[opcode] = 3;
+        }
+        for (int opcode = GETSTATIC; opcode <= INVOKESTATIC; opcode++) {
+            LENGTHS[opcode] = 3;
+        }
+        for (int opcode : new int[] {SIPUSH, LDC_W, LDC2_W, IINC, NEW, ANEWARRAY, CHECKCAST, INSTANCEOF, IFNULL,
+                IFNONNULL}) {
+            LENGTHS[opcode] = 3;
+        }
+        LENGTHS[MULTIANEWARRAY] = 4;
+        LENGTHS[INVOKEINTERFACE] = 5;
+        LENGTHS[INVOKEDYNAMIC] = 5;
+        LENGTHS[GOTO_W] = 5;
+        LENGTHS[JSR_W] = 5;
+        LENGTHS[TABLESWITCH] = 0;
+        LENGTHS[LOOKUPSWITCH] = 0;
+        LENGTHS[WIDE] = 0;
+    }
+
+    private byte[] code;
+    private int length;
+    private int pc;
+    private int next;
+    private int opcode;
+    private boolean wide;
+    private int table;
+
+    public InstructionCursor(Code code) {
+        reset(code);
+    }
+
+    InstructionCursor() {
+    }
+
+    public InstructionCursor reset(Code code) {
+        return reset(code.code(), code.getCodeLength());
+    }
+
+    /**
+     * Walks {@code code[0, length)}, for bytecode that is not held by a {@link Code}.
+     */
+    InstructionCursor reset(byte[] code, int length) {
+        this.code = code;
+        this.length = length;
+        this.pc = 0;
+        this.next = 0;
+        this.opcode = -1;
+        return this;
+    }
+
+    /**
+     * Moves to the next instruction and returns false once the end of the code is reached.
+     *
+     * @throws ClassFormatError if the instruction is unknown or runs past the end of the code
+     */
+    public boolean next() {
+        if (next >= length) {
+            pc = next;
+            opcode = -1;
+            return false;
+        }
+        pc = next;
+        opcode = code[pc] & 0xFF;
+        wide = false;
+        int size = LENGTHS[opcode];
+        if (size == 0) {
+            switch (opcode) {
+                case WIDE:
+                    check(pc + 2);
+                    wide = true;
+                    opcode = code[pc + 1] & 0xFF;
+                    if (opcode == IINC) {
+                        size = 6;
+                    } else if (opcode >= ILOAD && opcode <= ALOAD || opcode >= ISTORE && opcode <= ASTORE
+                            || opcode == RET) {
+                        size = 4;
+                    } else {
+                        throw new ClassFormatError("Invalid wide opcode " + opcode + " at " + pc);
+                    }
+                    break;
+                case TABLESWITCH:
+                    table = pc + 4 - (pc & 3);
+                    check(table + 12);
+                    int low = u4(table + 4);
+                    int high = u4(table + 8);
+                    if (low > high) {
+                        throw new ClassFormatError("Invalid tableswitch bounds at " + pc);
+                    }
+                    size = size(table + 12 + (((long) high - low + 1) << 2));
+                    break;
+                case LOOKUPSWITCH:
+                    table = pc + 4 - (pc & 3);
+                    check(table + 8);
+                    int pairs = u4(table + 4);
+                    if (pairs < 0) {
+                        throw new ClassFormatError("Invalid lookupswitch size at " + pc);
+                    }
+                    size = size(table + 8 + ((long) pairs << 3));
+                    break;
+                default:
+                    throw new ClassFormatError("Invalid opcode " + opcode + " at " + pc);
+            }
+        }
+        if (size <= 0) {
+            throw new ClassFormatError("Invalid instruction length at " + pc);
+        }
+        next = pc + size;
+        check(next);
+        return true;
+    }
+
+    private int size(long end) {
+        if (end > length) {
+            throw new ClassFormatError("Truncated instruction at " + pc);
+        }
+        return (int) end - pc;
+    }
+
+    private void check(int end) {
+        if (end > length || end < 0) {
+            throw new ClassFormatError("Truncated instruction at " + pc);
+        }
+    }
+
+    public int pc() {
+        return pc;
+    }
+
+    /**
+     * Returns the opcode of the current instruction; for a {@code wide} instruction this is the widened opcode.
+     */
+    public int opcode() {
+        return opcode;
+    }
+
+    public boolean isWide() {
+        return wide;
+    }
+
+    public int length() {
+        return next - pc;
+    }
+
+    /**
+     * Returns the local variable index of a load, store, {@code iinc} or {@code ret}, including the implicit
+     * index of the {@code _0} to {@code _3} forms.
+     */
+    public int localIndex() {
+        if (wide) {
+            return u2(pc + 2);
+        }
+        if (opcode >= ILOAD_0 && opcode <= ALOAD_3) {
+            return (opcode - ILOAD_0) & 3;
+        }
+        if (opcode >= ISTORE_0 && opcode <= ASTORE_3) {
+            return (opcode - ISTORE_0) & 3;
+        }
+        return code[pc + 1] & 0xFF;
+    }
+
+    /**
+     * Returns the immediate value: the constant of {@code bipush} and {@code sipush}, the increment of
+     * {@code iinc}, the array type of {@code newarray} or the dimensions of {@code multianewarray}.
+     */
+    public int intOperand() {
+        switch (opcode) {
+            case BIPUSH:
+                return code[pc + 1];
+            case SIPUSH:
+                return (short) u2(pc + 1);
+            case IINC:
+                return wide ? (short) u2(pc + 4) : code[pc + 2];
+            case NEWARRAY:
+                return code[pc + 1] & 0xFF;
+            case MULTIANEWARRAY:
+                return code[pc + 3] & 0xFF;
+            default:
+                throw new IllegalStateException(Opcodes.name(opcode) + " has no immediate value");
+        }
+    }
+
+    /**
+     * Returns the constant pool index operand of {@code ldc}, field, method, type and {@code invokedynamic}
+     * instructions.
+     */
+    public int cpIndex() {
+        return opcode == LDC ? code[pc + 1] & 0xFF : u2(pc + 1);
+    }
+
+    /**
+     * Returns the absolute target of a conditional or unconditional jump.
+     */
+    public int branchTarget() {
+        return opcode == GOTO_W || opcode == JSR_W ? pc + u4(pc + 1) : pc + (short) u2(pc + 1);
+    }
+
+    public int switchDefault() {
+        return pc + u4(table);
+    }
+
+    /**
+     * Returns the number of targets of a {@code tableswitch} or the number of pairs of a {@code lookupswitch}.
+     */
+    public int switchCount() {
+        return opcode == TABLESWITCH ? u4(table + 8) - u4(table + 4) + 1 : u4(table + 4);
+    }
+
+    public int switchKey(int index) {
+        return opcode == TABLESWITCH ? u4(table + 4) + index : u4(table + 8 + (index << 3));
+    }
+
+    public int switchTarget(int index) {
+        return pc + (opcode == TABLESWITCH ? u4(table + 12 + (index << 2)) : u4(table + 12 + (index << 3)));
+    }
+
+    private int u2(int offset) {
+        return (code[offset] & 0xFF) << 8 | code[offset + 1] & 0xFF;
+    }
+
+    private int u4(int offset) {
+        return code[offset] << 24 | (code[offset + 1] & 0xFF) << 16 | (code[offset + 2] & 0xFF) << 8
+                | code[offset + 3] & 0xFF;
+    }
+}
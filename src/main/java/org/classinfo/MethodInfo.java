@@ -1,12 +1,25 @@
 package org.classinfo;
 
-import java.io.DataInputStream;
 import java.io.IOException;
 
 public class MethodInfo extends AbstractInfo {
 
-    MethodInfo(DataInputStream stream, CPInfo[] pool) throws IOException {
-        super(stream, pool);
+    MethodInfo(ByteReader reader, ConstantPool pool, int flags) throws IOException {
+        super(reader, pool, flags);
+    }
+
+    /**
+     * Returns the {@code Code} attribute, or null for abstract and native methods or when parsed with
+     * {@link ClassInfo#SKIP_CODE}.
+     */
+    public Code getCode() {
+        for (AttributeInfo attribute : attributes) {
+            Code code = attribute.getCode();
+            if (code != null) {
+                return code;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -0,0 +1,266 @@
+package org.classinfo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Opt-in counters for {@link ClassInfo} parsing, shared by any number of threads. Pass an instance to
+ * {@link ClassInfo#parse(java.nio.ByteBuffer, int, SymbolTable, ParseMetrics)} or to a {@link ClassScanner};
+ * without one the parser only tests a null field per class and per attribute.
+ * <p>
+ * Each parsed class adds its time to one of the phases below. {@link #VALIDATE} covers the {@link ClassInfo#VALIDATE}
+ * checks, and {@link #CONSTANT_POOL} also covers the few header fields around the pool. Attribute counts include
+ * skipped attributes, and the bytes of a {@code Code} attribute include its nested attributes. A class that takes
+ * longer than the slow class threshold is also committed as an {@code org.classinfo.SlowClassParse} JFR event.
+ */
+public final class ParseMetrics {
+
+    public static final int CONSTANT_POOL = 0;
+    public static final int FIELDS = 1;
+    public static final int METHODS = 2;
+    public static final int ATTRIBUTES = 3;
+    public static final int VALIDATE = 4;
+
+    private static final String[] PHASE_NAMES = {"constant pool", "fields", "methods", "attributes", "validate"};
+
+    private final long slowClassNanos;
+    private final LongAdder[] phaseNanos = new LongAdder[PHASE_NAMES.length];
+    private final LongAdder classes = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder slowClasses = new LongAdder();
+    private final ConcurrentMap<String, LongAdder[]> attributes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private volatile long startNanos;
+
+    public ParseMetrics() {
+        this(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    public ParseMetrics(long slowClassNanos) {
+        this.slowClassNanos = slowClassNanos;
+        for (int phase = 0; phase < phaseNanos.length; phase++) {
+            phaseNanos[phase] = new LongAdder();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Zeroes every counter and restarts the clock behind {@link #getClassesPerSecond}.
+     */
+    public void reset() {
+        for (LongAdder adder : phaseNanos) {
+            adder.reset();
+        }
+        classes.reset();
+        bytes.reset();
+        slowClasses.reset();
+        attributes.clear();
+        errors.clear();
+        startNanos = System.nanoTime();
+    }
+
+    public long getNanos(int phase) {
+        return phaseNanos[phase].sum();
+    }
+
+    public long getClassCount() {
+        return classes.sum();
+    }
+
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    public long getSlowClassCount() {
+        return slowClasses.sum();
+    }
+
+    /**
+     * Returns the classes parsed per second of wall clock time since this instance was created or reset.
+     */
+    public double getClassesPerSecond() {
+        return perSecond(classes.sum());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(bytes.sum());
+    }
+
+    private double perSecond(long count) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : count * 1e9 / elapsed;
+    }
+
+    public long getAttributeCount(String name) {
+        LongAdder[] counters = attributes.get(name);
+        return counters == null ? 0 : counters[0].sum();
+    }
+
+    public long getAttributeBytes(String name) {
+        LongAdder[] counters = attributes.get(name);
+        return counters == null ? 0 : counters[1].sum();
+    }
+
+    /**
+     * Returns the attribute counts by name, sorted.
+     */
+    public Map<String, Long> getAttributeCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        attributes.forEach((name, counters) -> counts.put(name, counters[0].sum()));
+        return counts;
+    }
+
+    public long getErrorCount() {
+        long count = 0;
+        for (LongAdder adder : errors.values()) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the failed parses by exception class name, sorted.
+     */
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((name, adder) -> counts.put(name, adder.sum()));
+        return counts;
+    }
+
+    Recorder start() {
+        return new Recorder();
+    }
+
+    void attribute(String name, int length) {
+        LongAdder[] counters = attributes.get(name);
+        if (counters == null) {
+            counters = attributes.computeIfAbsent(name, key -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        }
+        counters[0].increment();
+        counters[1].add(length);
+    }
+
+    void failed(Throwable error) {
+        errors.computeIfAbsent(error.getClass().getName(), key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d classes, %d bytes, %.0f classes/s, %.0f bytes/s, %d slow, %d errors%n",
+                getClassCount(), getByteCount(), getClassesPerSecond(), getBytesPerSecond(), getSlowClassCount(),
+                getErrorCount()));
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            sb.append(String.format("  %-14s %10.3f ms%n", PHASE_NAMES[phase], getNanos(phase) / 1e6));
+        }
+        new TreeMap<>(attributes).forEach((name, counters) -> sb.append(String.format("  %-40s %10d %14d bytes%n",
+                name, counters[0].sum(), counters[1].sum())));
+        getErrorCounts().forEach((name, count) -> sb.append(String.format("  %-40s %10d%n", name, count)));
+        return sb.toString();
+    }
+
+    /**
+     * Times the phases of one class. Each {@link #enter} charges the time since the previous one to the phase that
+     * was running.
+     */
+    final class Recorder {
+
+        private final long start = System.nanoTime();
+        private final long[] nanos = new long[PHASE_NAMES.length];
+        private long mark = start;
+        private int phase = CONSTANT_POOL;
+
+        /**
+         * Switches to {@code next} and returns the phase that was running.
+         */
+        int enter(int next) {
+            long now = System.nanoTime();
+            nanos[phase] += now - mark;
+            mark = now;
+            int previous = phase;
+            phase = next;
+            return previous;
+        }
+
+        void attribute(String name, int length) {
+            ParseMetrics.this.attribute(name, length);
+        }
+
+        void finish(ClassInfo classInfo, int length) {
+            enter(phase);
+            long total = mark - start;
+            for (int i = 0; i < nanos.length; i++) {
+                phaseNanos[i].add(nanos[i]);
+            }
+            classes.increment();
+            bytes.add(length);
+            if (total >= slowClassNanos) {
+                slowClasses.increment();
+                SlowClassEvent event = new SlowClassEvent();
+                if (event.isEnabled()) {
+                    event.className = classInfo.getClassName();
+                    event.bytes = length;
+                    event.parseTime = total;
+                    event.constantPoolTime = nanos[CONSTANT_POOL];
+                    event.fieldsTime = nanos[FIELDS];
+                    event.methodsTime = nanos[METHODS];
+                    event.attributesTime = nanos[ATTRIBUTES];
+                    event.validateTime = nanos[VALIDATE];
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    @Name("org.classinfo.SlowClassParse")
+    @Label("Slow Class Parse")
+    @Description("A class file that took longer than the slow class threshold of its ParseMetrics to parse")
+    @Category("ClassInfo")
+    @StackTrace(false)
+    static final class SlowClassEvent extends Event {
+
+        @Label("Class")
+        String className;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+
+        @Label("Constant Pool")
+        @Timespan
+        long constantPoolTime;
+
+        @Label("Fields")
+        @Timespan
+        long fieldsTime;
+
+        @Label("Methods")
+        @Timespan
+        long methodsTime;
+
+        @Label("Attributes")
+        @Timespan
+        long attributesTime;
+
+        @Label("Validate")
+        @Timespan
+        long validateTime;
+    }
+}
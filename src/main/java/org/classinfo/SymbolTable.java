@@ -0,0 +1,116 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interns UTF8 constants across constant pools so that equal names share one {@code String}. Lookups hash and
+ * compare the raw modified UTF-8 bytes, so only the first occurrence of a symbol is decoded. The table is striped
+ * and may be shared by the threads of a parallel scan; it only ever grows.
+ */
+public final class SymbolTable {
+
+    private final Segment[] segments;
+    private final int shift;
+
+    public SymbolTable() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public SymbolTable(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        }
+        int count = Integer.highestOneBit(Math.min(concurrency, 1 << 16) * 2 - 1);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+        shift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    String intern(ByteBuffer buffer, int offset, int length) throws IOException {
+        int hash = 0x811C9DC5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = (hash ^ buffer.get(i)) * 0x01000193;
+        }
+        Segment segment = segments.length == 1 ? segments[0] : segments[hash >>> shift];
+        return segment.intern(buffer, offset, length, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private static final class Segment {
+
+        private Entry[] table = new Entry[64];
+        private int size;
+
+        synchronized String intern(ByteBuffer buffer, int offset, int length, int hash) throws IOException {
+            int bucket = hash & (table.length - 1);
+            for (Entry entry = table[bucket]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.matches(buffer, offset, length)) {
+                    return entry.value;
+                }
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+            String value = ByteReader.decodeUTF(buffer, offset, length);
+            table[bucket] = new Entry(bytes, hash, value, table[bucket]);
+            if (++size > table.length - (table.length >>> 2)) {
+                resize();
+            }
+            return value;
+        }
+
+        private void resize() {
+            Entry[] old = table;
+            table = new Entry[old.length * 2];
+            for (Entry head : old) {
+                for (Entry entry = head; entry != null; ) {
+                    Entry next = entry.next;
+                    int bucket = entry.hash & (table.length - 1);
+                    entry.next = table[bucket];
+                    table[bucket] = entry;
+                    entry = next;
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final byte[] bytes;
+        final int hash;
+        final String value;
+        Entry next;
+
+        Entry(byte[] bytes, int hash, String value, Entry next) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+
+        boolean matches(ByteBuffer buffer, int offset, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package org.classinfo;
 
-import java.util.ArrayList;
-import java.util.List;
-
 class Utils {
 
     private static final int ACC_PUBLIC = 0x0001;
@@ -138,67 +135,7 @@ class Utils {
     }
 
     static String getSignature(String name, String descriptor) {
-        if (descriptor.charAt(0) != '(') {
-            return expand(descriptor) + ' ' + name;
-        }
-        int index = descriptor.indexOf(')');
-        String parameters = expand(descriptor.substring(1, index));
-        String returnValue = expand(descriptor.substring(index + 1));
-        return returnValue + ' ' + name + '(' + parameters + ')';
-
-    }
-
-    private static String expand(String descriptor) {
-        List<String> list = new ArrayList<>();
-        String array = "";
-        for (int i = 0; i < descriptor.length(); i++) {
-            String param = null;
-            char ch = descriptor.charAt(i);
-            switch (ch) {
-                case '[':
-                    array += "[]";
-                    break;
-                case 'L':
-                    int index = descriptor.indexOf(';', i + 1);
-                    param = descriptor.substring(i + 1, index).replace('/', '.');
-                    i = index;
-                    break;
-                case 'B':
-                    param = "byte";
-                    break;
-                case 'C':
-                    param = "char";
-                    break;
-                case 'D':
-                    param = "double";
-                    break;
-                case 'F':
-                    param = "float";
-                    break;
-                case 'I':
-                    param = "int";
-                    break;
-                case 'J':
-                    param = "long";
-                    break;
-                case 'S':
-                    param = "short";
-                    break;
-                case 'Z':
-                    param = "boolean";
-                    break;
-                case 'V':
-                    param = "void";
-                    break;
-                default:
-                    throw new RuntimeException("Invalid Description: " + ch);
-            }
-            if (ch != '[') {
-                list.add(param + array);
-                array = "";
-            }
-        }
-        return String.join(", ", list);
+        return Descriptor.of(descriptor).toSignature(name);
     }
 
 }
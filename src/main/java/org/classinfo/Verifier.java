@@ -0,0 +1,1188 @@
+package org.classinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.classinfo.Opcodes.*;
+
+/**
+ * A type-checking verifier in the style of JVMS 4.10.1. Each method is checked in one linear pass over its
+ * instructions, against the frames of its {@code StackMapTable}; classes must therefore be parsed without
+ * {@link ClassInfo#SKIP_CODE} or {@link ClassInfo#SKIP_FRAMES}. Reference assignability is answered by a
+ * {@link ClassHierarchy}, which must contain every class a checked method's types depend on. Protected access and
+ * class loading constraints are not checked.
+ * <p>
+ * A verifier is stateless and may be shared, e.g. by the callbacks of a parallel {@link ClassScanner}.
+ */
+public final class Verifier {
+
+    private static final int TOP = 0;
+    private static final int INT = 1;
+    private static final int FLOAT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int NULL = 5;
+    private static final int UNINIT_THIS = 6;
+    private static final int KIND = 0xFF << 24;
+    private static final int OBJECT = 1 << 24;
+    private static final int UNINIT = 2 << 24;
+    private static final int PAYLOAD = ~KIND;
+
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_NATIVE = 0x0100;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private static final String OBJECT_CLASS = "java/lang/Object";
+
+    private final ClassHierarchy hierarchy;
+
+    public Verifier(ClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Verifies every method of {@code classInfo}.
+     *
+     * @throws VerifyError naming the method, pc and opcode of the first failing instruction
+     */
+    public void verify(ClassInfo classInfo) {
+        if (classInfo.getMajorVersion() < 50) {
+            throw new VerifyError(classInfo.getClassName() + ": class file version "
+                    + classInfo.getMajorVersion() + " needs verification by type inference");
+        }
+        Context context = new Context(classInfo);
+        for (MethodInfo method : classInfo.getMethods()) {
+            if ((method.getAccessFlags() & (ACC_ABSTRACT | ACC_NATIVE)) == 0) {
+                new MethodVerifier(context, method).verify();
+            }
+        }
+    }
+
+    private final class Context {
+
+        final ConstantPool pool;
+        final String className;
+        final String superClassName;
+        final List<String> types = new ArrayList<>();
+        final Map<String, Integer> typeIds = new HashMap<>();
+        final Map<String, Boolean> assignable = new HashMap<>();
+
+        Context(ClassInfo classInfo) {
+            pool = classInfo.getConstantPool();
+            className = classInfo.getClassName().replace('.', '/');
+            String superName = classInfo.getSuperClassName();
+            superClassName = superName == null ? null : superName.replace('.', '/');
+        }
+
+        int object(String name) {
+            Integer id = typeIds.get(name);
+            if (id == null) {
+                id = types.size();
+                types.add(name);
+                typeIds.put(name, id);
+            }
+            return OBJECT | id;
+        }
+
+        String name(int type) {
+            return types.get(type & PAYLOAD);
+        }
+
+        boolean isAssignable(String from, String to) {
+            if (from.equals(to) || to.equals(OBJECT_CLASS)) {
+                return true;
+            }
+            if (to.charAt(0) == '[') {
+                if (from.charAt(0) != '[') {
+                    return false;
+                }
+                String fromComponent = from.substring(1);
+                String toComponent = to.substring(1);
+                if (isPrimitive(fromComponent) || isPrimitive(toComponent)) {
+                    return fromComponent.equals(toComponent);
+                }
+                return isAssignable(element(fromComponent), element(toComponent));
+            }
+            if (from.charAt(0) == '[') {
+                return to.equals("java/lang/Cloneable") || to.equals("java/io/Serializable");
+            }
+            String key = from + ' ' + to;
+            Boolean result = assignable.get(key);
+            if (result == null) {
+                result = isSubclass(from, to);
+                assignable.put(key, result);
+            }
+            return result;
+        }
+
+        private boolean isSubclass(String from, String to) {
+            int toId = hierarchy.id(to.replace('/', '.'));
+            if (toId >= 0 && hierarchy.getAccessFlags(toId) != -1
+                    && (hierarchy.getAccessFlags(toId) & ACC_INTERFACE) != 0) {
+                return true;
+            }
+            int fromId = hierarchy.id(from.replace('/', '.'));
+            for (int id = fromId; ; id = hierarchy.getSuperClass(id)) {
+                if (id < 0 || hierarchy.getAccessFlags(id) == -1) {
+                    throw new IllegalArgumentException("cannot resolve class "
+                            + (id < 0 ? from.replace('/', '.') : hierarchy.name(id)));
+                }
+                if (id == toId) {
+                    return true;
+                }
+                if (hierarchy.getSuperClass(id) < 0) {
+                    break;
+                }
+            }
+            if (toId < 0 || hierarchy.getAccessFlags(toId) == -1) {
+                throw new IllegalArgumentException("cannot resolve class " + to.replace('/', '.'));
+            }
+            return false;
+        }
+    }
+
+    private static boolean isPrimitive(String descriptor) {
+        return descriptor.length() == 1;
+    }
+
+    private static String element(String descriptor) {
+        return descriptor.charAt(0) == 'L' ? descriptor.substring(1, descriptor.length() - 1) : descriptor;
+    }
+
+    private static final class MethodVerifier {
+
+        private final Context context;
+        private final ConstantPool pool;
+        private final String name;
+        private final String descriptor;
+        private final boolean constructor;
+        private final Code code;
+        private final byte[] bytes;
+        private final int maxLocals;
+        private final int maxStack;
+        private final int returnType;
+        private final int[] locals;
+        private final int[] stack;
+        private int sp;
+        private int[] frameAt;
+        private int[][] frameLocals;
+        private int[][] frameStacks;
+        private int frameCount;
+        private int pc;
+        private int opcode;
+
+        MethodVerifier(Context context, MethodInfo method) {
+            this.context = context;
+            this.pool = context.pool;
+            this.name = method.getName();
+            this.descriptor = method.getDescriptor();
+            this.constructor = name.equals("<init>");
+            this.code = method.getCode();
+            if (code == null) {
+                throw new VerifyError(where() + "missing Code attribute");
+            }
+            this.bytes = code.code();
+            this.maxLocals = code.getMaxLocals();
+            this.maxStack = code.getMaxStack();
+            Descriptor parsed = Descriptor.of(descriptor);
+            this.returnType = parsed.getSort() == 'V' ? TOP : type(parsed.getTypeDescriptor());
+            this.locals = new int[maxLocals];
+            this.stack = new int[maxStack];
+            pc = -1;
+            int[] entries = new int[parsed.getParameterCount() + 1];
+            int count = 0;
+            if ((method.getAccessFlags() & ACC_STATIC) == 0) {
+                entries[count++] = constructor && !context.className.equals(OBJECT_CLASS) ? UNINIT_THIS
+                        : context.object(context.className);
+            }
+            for (int i = 0; i < parsed.getParameterCount(); i++) {
+                entries[count++] = type(parsed.getParameterDescriptor(i));
+            }
+            readFrames(method, entries, count);
+            System.arraycopy(expand(entries, count, maxLocals, "locals"), 0, locals, 0, maxLocals);
+        }
+
+        private void readFrames(MethodInfo method, int[] entries, int count) {
+            frameAt = new int[bytes.length];
+            Arrays.fill(frameAt, -1);
+            AttributeInfo.StackMapFrame[] frames = code.stackMapTable();
+            if (frames == null) {
+                frameLocals = new int[0][];
+                frameStacks = new int[0][];
+                return;
+            }
+            frameLocals = new int[frames.length][];
+            frameStacks = new int[frames.length][];
+            int[] current = Arrays.copyOf(entries, Math.max(maxLocals, 1));
+            int size = count;
+            int offset = -1;
+            for (AttributeInfo.StackMapFrame frame : frames) {
+                offset += frame.offsetDelta + 1;
+                if (offset >= bytes.length) {
+                    throw new VerifyError(where() + "stack map frame offset " + offset + " is past the code");
+                }
+                int[] stackEntries = new int[0];
+                int type = frame.frameType;
+                if (type <= AttributeInfo.StackMapFrame.SAME_LOCALS_1_STACK_ITEM_MAX
+                        || type == AttributeInfo.StackMapFrame.SAME_LOCALS_1_STACK_ITEM_EXTENDED) {
+                    stackEntries = types(frame.stack);
+                } else if (type >= AttributeInfo.StackMapFrame.CHOP_MIN
+                        && type <= AttributeInfo.StackMapFrame.CHOP_MAX) {
+                    size -= AttributeInfo.StackMapFrame.SAME_FRAME_EXTENDED - type;
+                    if (size < 0) {
+                        throw new VerifyError(where() + "chop frame at " + offset + " removes too many locals");
+                    }
+                } else if (type >= AttributeInfo.StackMapFrame.APPEND_MIN
+                        && type <= AttributeInfo.StackMapFrame.APPEND_MAX) {
+                    int[] appended = types(frame.locals);
+                    if (size + appended.length > current.length) {
+                        current = Arrays.copyOf(current, size + appended.length);
+                    }
+                    System.arraycopy(appended, 0, current, size, appended.length);
+                    size += appended.length;
+                } else if (type == AttributeInfo.StackMapFrame.FULL_FRAME) {
+                    current = types(frame.locals);
+                    size = current.length;
+                    stackEntries = types(frame.stack);
+                }
+                frameAt[offset] = frameCount;
+                frameLocals[frameCount] = expand(current, size, maxLocals, "locals");
+                frameStacks[frameCount] = expand(stackEntries, stackEntries.length, -1, "stack");
+                if (frameStacks[frameCount].length > maxStack) {
+                    throw new VerifyError(where() + "stack map frame at " + offset + " exceeds max_stack");
+                }
+                frameCount++;
+            }
+        }
+
+        private int[] types(AttributeInfo.StackMapFrame.VerificationTypeInfo[] infos) {
+            int[] types = new int[infos.length];
+            for (int i = 0; i < infos.length; i++) {
+                AttributeInfo.StackMapFrame.VerificationTypeInfo info = infos[i];
+                switch (info.tag) {
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Integer:
+                        types[i] = INT;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Float:
+                        types[i] = FLOAT;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Long:
+                        types[i] = LONG;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Double:
+                        types[i] = DOUBLE;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Null:
+                        types[i] = NULL;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_UninitializedThis:
+                        types[i] = UNINIT_THIS;
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Object:
+                        types[i] = classType(info.cpoolIndex);
+                        break;
+                    case AttributeInfo.StackMapFrame.VerificationTypeInfo.ITEM_Uninitialized:
+                        types[i] = UNINIT | info.offset;
+                        break;
+                    default:
+                        types[i] = TOP;
+                }
+            }
+            return types;
+        }
+
+        /**
+         * Expands frame entries into slots, where long and double take two; {@code length} pads with top.
+         */
+        private int[] expand(int[] entries, int count, int length, String what) {
+            int slots = 0;
+            for (int i = 0; i < count; i++) {
+                slots += isWide(entries[i]) ? 2 : 1;
+            }
+            if (length >= 0 && slots > length) {
+                throw new VerifyError(where() + what + " need " + slots + " slots, max_locals is " + length);
+            }
+            int[] expanded = new int[Math.max(slots, length)];
+            int slot = 0;
+            for (int i = 0; i < count; i++) {
+                expanded[slot++] = entries[i];
+                if (isWide(entries[i])) {
+                    expanded[slot++] = TOP;
+                }
+            }
+            return expanded;
+        }
+
+        void verify() {
+            InstructionCursor cursor = code.instructions();
+            boolean[] starts = new boolean[bytes.length];
+            boolean fallsThrough = true;
+            try {
+                while (cursor.next()) {
+                    pc = cursor.pc();
+                    opcode = cursor.opcode();
+                    starts[pc] = true;
+                    int frame = frameAt[pc];
+                    if (frame >= 0) {
+                        if (fallsThrough) {
+                            checkFrame(frame, true);
+                        }
+                        System.arraycopy(frameLocals[frame], 0, locals, 0, maxLocals);
+                        sp = frameStacks[frame].length;
+                        System.arraycopy(frameStacks[frame], 0, stack, 0, sp);
+                    } else if (!fallsThrough) {
+                        throw error("expected a stack map frame after an unconditional branch");
+                    }
+                    checkHandlers();
+                    fallsThrough = execute(cursor);
+                }
+            } catch (ClassFormatError | RuntimeException e) {
+                throw error(String.valueOf(e.getMessage()));
+            }
+            if (fallsThrough) {
+                throw error("falling off the end of the code");
+            }
+            for (int offset = 0; offset < bytes.length; offset++) {
+                if (frameAt[offset] >= 0 && !starts[offset]) {
+                    pc = offset;
+                    throw error("stack map frame is not at an instruction boundary");
+                }
+            }
+        }
+
+        private boolean execute(InstructionCursor cursor) {
+            switch (opcode) {
+                case NOP:
+                    return true;
+                case ACONST_NULL:
+                    push(NULL);
+                    return true;
+                case ICONST_M1:
+                case ICONST_0:
+                case ICONST_1:
+                case ICONST_2:
+                case ICONST_3:
+                case ICONST_4:
+                case ICONST_5:
+                case BIPUSH:
+                case SIPUSH:
+                    push(INT);
+                    return true;
+                case LCONST_0:
+                case LCONST_1:
+                    push(LONG);
+                    return true;
+                case FCONST_0:
+                case FCONST_1:
+                case FCONST_2:
+                    push(FLOAT);
+                    return true;
+                case DCONST_0:
+                case DCONST_1:
+                    push(DOUBLE);
+                    return true;
+                case LDC:
+                case LDC_W:
+                case LDC2_W:
+                    push(constant(cursor.cpIndex(), opcode == LDC2_W));
+                    return true;
+                case ILOAD:
+                case ILOAD_0:
+                case ILOAD_1:
+                case ILOAD_2:
+                case ILOAD_3:
+                    push(load(cursor.localIndex(), INT));
+                    return true;
+                case LLOAD:
+                case LLOAD_0:
+                case LLOAD_1:
+                case LLOAD_2:
+                case LLOAD_3:
+                    push(load(cursor.localIndex(), LONG));
+                    return true;
+                case FLOAD:
+                case FLOAD_0:
+                case FLOAD_1:
+                case FLOAD_2:
+                case FLOAD_3:
+                    push(load(cursor.localIndex(), FLOAT));
+                    return true;
+                case DLOAD:
+                case DLOAD_0:
+                case DLOAD_1:
+                case DLOAD_2:
+                case DLOAD_3:
+                    push(load(cursor.localIndex(), DOUBLE));
+                    return true;
+                case ALOAD:
+                case ALOAD_0:
+                case ALOAD_1:
+                case ALOAD_2:
+                case ALOAD_3:
+                    push(load(cursor.localIndex(), OBJECT));
+                    return true;
+                case IALOAD:
+                    return arrayLoad(INT, "[I", null);
+                case LALOAD:
+                    return arrayLoad(LONG, "[J", null);
+                case FALOAD:
+                    return arrayLoad(FLOAT, "[F", null);
+                case DALOAD:
+                    return arrayLoad(DOUBLE, "[D", null);
+                case BALOAD:
+                    return arrayLoad(INT, "[B", "[Z");
+                case CALOAD:
+                    return arrayLoad(INT, "[C", null);
+                case SALOAD:
+                    return arrayLoad(INT, "[S", null);
+                case AALOAD: {
+                    pop(INT);
+                    int array = popReference();
+                    if (array == NULL) {
+                        push(NULL);
+                    } else {
+                        push(type(component(array, true)));
+                    }
+                    return true;
+                }
+                case ISTORE:
+                case ISTORE_0:
+                case ISTORE_1:
+                case ISTORE_2:
+                case ISTORE_3:
+                    store(cursor.localIndex(), pop(INT));
+                    return true;
+                case LSTORE:
+                case LSTORE_0:
+                case LSTORE_1:
+                case LSTORE_2:
+                case LSTORE_3:
+                    store(cursor.localIndex(), pop(LONG));
+                    return true;
+                case FSTORE:
+                case FSTORE_0:
+                case FSTORE_1:
+                case FSTORE_2:
+                case FSTORE_3:
+                    store(cursor.localIndex(), pop(FLOAT));
+                    return true;
+                case DSTORE:
+                case DSTORE_0:
+                case DSTORE_1:
+                case DSTORE_2:
+                case DSTORE_3:
+                    store(cursor.localIndex(), pop(DOUBLE));
+                    return true;
+                case ASTORE:
+                case ASTORE_0:
+                case ASTORE_1:
+                case ASTORE_2:
+                case ASTORE_3:
+                    store(cursor.localIndex(), popReference());
+                    return true;
+                case IASTORE:
+                    return arrayStore(INT, "[I", null);
+                case LASTORE:
+                    return arrayStore(LONG, "[J", null);
+                case FASTORE:
+                    return arrayStore(FLOAT, "[F", null);
+                case DASTORE:
+                    return arrayStore(DOUBLE, "[D", null);
+                case BASTORE:
+                    return arrayStore(INT, "[B", "[Z");
+                case CASTORE:
+                    return arrayStore(INT, "[C", null);
+                case SASTORE:
+                    return arrayStore(INT, "[S", null);
+                case AASTORE: {
+                    popReference();
+                    pop(INT);
+                    int array = popReference();
+                    if (array != NULL) {
+                        component(array, true);
+                    }
+                    return true;
+                }
+                case POP:
+                    category1(sp - 1);
+                    sp--;
+                    return true;
+                case POP2:
+                    block(sp - 2);
+                    sp -= 2;
+                    return true;
+                case DUP:
+                    category1(sp - 1);
+                    insert(1, 0);
+                    return true;
+                case DUP_X1:
+                    category1(sp - 1);
+                    category1(sp - 2);
+                    insert(1, 1);
+                    return true;
+                case DUP_X2:
+                    category1(sp - 1);
+                    block(sp - 3);
+                    insert(1, 2);
+                    return true;
+                case DUP2:
+                    block(sp - 2);
+                    insert(2, 0);
+                    return true;
+                case DUP2_X1:
+                    block(sp - 2);
+                    category1(sp - 3);
+                    insert(2, 1);
+                    return true;
+                case DUP2_X2:
+                    block(sp - 2);
+                    block(sp - 4);
+                    insert(2, 2);
+                    return true;
+                case SWAP: {
+                    category1(sp - 1);
+                    category1(sp - 2);
+                    int top = stack[sp - 1];
+                    stack[sp - 1] = stack[sp - 2];
+                    stack[sp - 2] = top;
+                    return true;
+                }
+                case IINC:
+                    load(cursor.localIndex(), INT);
+                    return true;
+                case I2L:
+                    return convert(INT, LONG);
+                case I2F:
+                    return convert(INT, FLOAT);
+                case I2D:
+                    return convert(INT, DOUBLE);
+                case L2I:
+                    return convert(LONG, INT);
+                case L2F:
+                    return convert(LONG, FLOAT);
+                case L2D:
+                    return convert(LONG, DOUBLE);
+                case F2I:
+                    return convert(FLOAT, INT);
+                case F2L:
+                    return convert(FLOAT, LONG);
+                case F2D:
+                    return convert(FLOAT, DOUBLE);
+                case D2I:
+                    return convert(DOUBLE, INT);
+                case D2L:
+                    return convert(DOUBLE, LONG);
+                case D2F:
+                    return convert(DOUBLE, FLOAT);
+                case I2B:
+                case I2C:
+                case I2S:
+                    return convert(INT, INT);
+                case LCMP:
+                    pop(LONG);
+                    pop(LONG);
+                    push(INT);
+                    return true;
+                case FCMPL:
+                case FCMPG:
+                    pop(FLOAT);
+                    pop(FLOAT);
+                    push(INT);
+                    return true;
+                case DCMPL:
+                case DCMPG:
+                    pop(DOUBLE);
+                    pop(DOUBLE);
+                    push(INT);
+                    return true;
+                case IFEQ:
+                case IFNE:
+                case IFLT:
+                case IFGE:
+                case IFGT:
+                case IFLE:
+                    pop(INT);
+                    branch(cursor.branchTarget());
+                    return true;
+                case IF_ICMPEQ:
+                case IF_ICMPNE:
+                case IF_ICMPLT:
+                case IF_ICMPGE:
+                case IF_ICMPGT:
+                case IF_ICMPLE:
+                    pop(INT);
+                    pop(INT);
+                    branch(cursor.branchTarget());
+                    return true;
+                case IF_ACMPEQ:
+                case IF_ACMPNE:
+                    popReference();
+                    popReference();
+                    branch(cursor.branchTarget());
+                    return true;
+                case IFNULL:
+                case IFNONNULL:
+                    popReference();
+                    branch(cursor.branchTarget());
+                    return true;
+                case GOTO:
+                case GOTO_W:
+                    branch(cursor.branchTarget());
+                    return false;
+                case JSR:
+                case JSR_W:
+                case RET:
+                    throw error("jsr and ret are not allowed with stack map frames");
+                case TABLESWITCH:
+                case LOOKUPSWITCH:
+                    pop(INT);
+                    for (int i = 0; i < cursor.switchCount(); i++) {
+                        if (opcode == LOOKUPSWITCH && i > 0 && cursor.switchKey(i - 1) >= cursor.switchKey(i)) {
+                            throw error("lookupswitch keys are not sorted");
+                        }
+                        branch(cursor.switchTarget(i));
+                    }
+                    branch(cursor.switchDefault());
+                    return false;
+                case IRETURN:
+                case LRETURN:
+                case FRETURN:
+                case DRETURN:
+                case ARETURN:
+                    if (returnType == TOP) {
+                        throw error("value returned from a void method");
+                    }
+                    if (opcode == ARETURN) {
+                        assign(popReference(), returnType);
+                    } else {
+                        int expected = opcode == IRETURN ? INT : opcode == LRETURN ? LONG
+                                : opcode == FRETURN ? FLOAT : DOUBLE;
+                        if (expected != returnType) {
+                            throw error("return type mismatch");
+                        }
+                        pop(expected);
+                    }
+                    return false;
+                case RETURN:
+                    if (returnType != TOP) {
+                        throw error("missing return value");
+                    }
+                    if (constructor) {
+                        for (int local : locals) {
+                            if (local == UNINIT_THIS) {
+                                throw error("constructor returns before calling super() or this()");
+                            }
+                        }
+                    }
+                    return false;
+                case GETSTATIC:
+                    push(type(pool.descriptor(pool.nameAndTypeIndex(cursor.cpIndex()))));
+                    return true;
+                case PUTSTATIC:
+                    popValue(type(pool.descriptor(pool.nameAndTypeIndex(cursor.cpIndex()))));
+                    return true;
+                case GETFIELD: {
+                    int index = cursor.cpIndex();
+                    assign(popReference(), classType(pool.classIndex(index)));
+                    push(type(pool.descriptor(pool.nameAndTypeIndex(index))));
+                    return true;
+                }
+                case PUTFIELD: {
+                    int index = cursor.cpIndex();
+                    popValue(type(pool.descriptor(pool.nameAndTypeIndex(index))));
+                    int owner = classType(pool.classIndex(index));
+                    int target = popReference();
+                    if (target != UNINIT_THIS || owner != context.object(context.className)) {
+                        assign(target, owner);
+                    }
+                    return true;
+                }
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE:
+                case INVOKEDYNAMIC:
+                    invoke(cursor.cpIndex());
+                    return true;
+                case NEW:
+                    if (pool.className(cursor.cpIndex()).charAt(0) == '[') {
+                        throw error("new of an array class");
+                    }
+                    push(UNINIT | pc);
+                    return true;
+                case NEWARRAY: {
+                    pop(INT);
+                    int atype = cursor.intOperand();
+                    if (atype < 4 || atype > 11) {
+                        throw error("invalid newarray type " + atype);
+                    }
+                    push(context.object("[" + "ZCFDBSIJ".charAt(atype - 4)));
+                    return true;
+                }
+                case ANEWARRAY: {
+                    pop(INT);
+                    String component = pool.className(cursor.cpIndex());
+                    push(context.object(component.charAt(0) == '[' ? '[' + component : "[L" + component + ';'));
+                    return true;
+                }
+                case MULTIANEWARRAY: {
+                    String arrayClass = pool.className(cursor.cpIndex());
+                    int dimensions = cursor.intOperand();
+                    if (dimensions < 1 || arrayClass.length() <= dimensions
+                            || !arrayClass.substring(0, dimensions).chars().allMatch(c -> c == '[')) {
+                        throw error("invalid multianewarray dimensions");
+                    }
+                    for (int i = 0; i < dimensions; i++) {
+                        pop(INT);
+                    }
+                    push(context.object(arrayClass));
+                    return true;
+                }
+                case ARRAYLENGTH: {
+                    int array = popReference();
+                    if (array != NULL && ((array & KIND) != OBJECT || context.name(array).charAt(0) != '[')) {
+                        throw error("arraylength on a non-array");
+                    }
+                    push(INT);
+                    return true;
+                }
+                case ATHROW:
+                    assign(popReference(), context.object("java/lang/Throwable"));
+                    return false;
+                case CHECKCAST:
+                    popReference();
+                    push(classType(cursor.cpIndex()));
+                    return true;
+                case INSTANCEOF:
+                    popReference();
+                    push(INT);
+                    return true;
+                case MONITORENTER:
+                case MONITOREXIT:
+                    popReference();
+                    return true;
+                default:
+                    if (opcode >= IADD && opcode <= DREM) {
+                        int type = arithmetic(opcode - IADD);
+                        pop(type);
+                        pop(type);
+                        push(type);
+                        return true;
+                    }
+                    if (opcode >= INEG && opcode <= DNEG) {
+                        int type = arithmetic(opcode - INEG);
+                        pop(type);
+                        push(type);
+                        return true;
+                    }
+                    if (opcode >= ISHL && opcode <= LUSHR) {
+                        int type = (opcode - ISHL) % 2 == 0 ? INT : LONG;
+                        pop(INT);
+                        pop(type);
+                        push(type);
+                        return true;
+                    }
+                    if (opcode >= IAND && opcode <= LXOR) {
+                        int type = (opcode - IAND) % 2 == 0 ? INT : LONG;
+                        pop(type);
+                        pop(type);
+                        push(type);
+                        return true;
+                    }
+                    throw error("unexpected opcode");
+            }
+        }
+
+        private static int arithmetic(int offset) {
+            switch (offset % 4) {
+                case 0:
+                    return INT;
+                case 1:
+                    return LONG;
+                case 2:
+                    return FLOAT;
+                default:
+                    return DOUBLE;
+            }
+        }
+
+        private void invoke(int index) {
+            int nameAndType = pool.nameAndTypeIndex(index);
+            String methodName = pool.name(nameAndType);
+            Descriptor called = Descriptor.of(pool.descriptor(nameAndType));
+            boolean init = methodName.equals("<init>");
+            if (methodName.equals("<clinit>") || init && opcode != INVOKESPECIAL) {
+                throw error("illegal call to " + methodName);
+            }
+            for (int i = called.getParameterCount() - 1; i >= 0; i--) {
+                popValue(type(called.getParameterDescriptor(i)));
+            }
+            if (opcode != INVOKESTATIC && opcode != INVOKEDYNAMIC) {
+                int owner = classType(pool.classIndex(index));
+                int receiver = popReference();
+                if (init) {
+                    int initialized;
+                    if (receiver == UNINIT_THIS) {
+                        initialized = context.object(context.className);
+                        if (owner != initialized && (context.superClassName == null
+                                || owner != context.object(context.superClassName))) {
+                            throw error("super() or this() call on " + context.name(owner));
+                        }
+                    } else if ((receiver & KIND) == UNINIT) {
+                        int newPc = receiver & PAYLOAD;
+                        if (newPc + 2 >= bytes.length || (bytes[newPc] & 0xFF) != NEW) {
+                            throw error("uninitialized type does not refer to a new instruction");
+                        }
+                        initialized = classType((bytes[newPc + 1] & 0xFF) << 8 | bytes[newPc + 2] & 0xFF);
+                        if (initialized != owner) {
+                            throw error("constructor of " + context.name(owner) + " called on a new "
+                                    + context.name(initialized));
+                        }
+                    } else {
+                        throw error("<init> called on an initialized object");
+                    }
+                    replace(receiver, initialized);
+                } else if (opcode == INVOKESPECIAL) {
+                    assign(receiver, context.object(context.className));
+                } else {
+                    assign(receiver, owner);
+                }
+            }
+            if (called.getSort() != 'V') {
+                push(type(called.getTypeDescriptor()));
+            }
+        }
+
+        private void replace(int from, int to) {
+            for (int i = 0; i < maxLocals; i++) {
+                if (locals[i] == from) {
+                    locals[i] = to;
+                }
+            }
+            for (int i = 0; i < sp; i++) {
+                if (stack[i] == from) {
+                    stack[i] = to;
+                }
+            }
+        }
+
+        private int constant(int index, boolean wide) {
+            int type;
+            switch (pool.tag(index)) {
+                case CPInfo.INTEGER:
+                    type = INT;
+                    break;
+                case CPInfo.FLOAT:
+                    type = FLOAT;
+                    break;
+                case CPInfo.LONG:
+                    type = LONG;
+                    break;
+                case CPInfo.DOUBLE:
+                    type = DOUBLE;
+                    break;
+                case CPInfo.STRING:
+                    type = context.object("java/lang/String");
+                    break;
+                case CPInfo.CLASS:
+                    type = context.object("java/lang/Class");
+                    break;
+                case CPInfo.METHOD_TYPE:
+                    type = context.object("java/lang/invoke/MethodType");
+                    break;
+                case CPInfo.METHOD_HANDLE:
+                    type = context.object("java/lang/invoke/MethodHandle");
+                    break;
+                case CPInfo.DYNAMIC:
+                    type = type(pool.descriptor(pool.nameAndTypeIndex(index)));
+                    break;
+                default:
+                    throw error("ldc of constant #" + index + " with tag " + pool.tag(index));
+            }
+            if (isWide(type) != wide) {
+                throw error("ldc of a constant of the wrong category");
+            }
+            return type;
+        }
+
+        private boolean arrayLoad(int element, String array, String alternative) {
+            pop(INT);
+            checkArray(popReference(), array, alternative);
+            push(element);
+            return true;
+        }
+
+        private boolean arrayStore(int element, String array, String alternative) {
+            pop(element);
+            pop(INT);
+            checkArray(popReference(), array, alternative);
+            return true;
+        }
+
+        private void checkArray(int type, String array, String alternative) {
+            if (type == NULL) {
+                return;
+            }
+            if ((type & KIND) != OBJECT
+                    || !context.name(type).equals(array) && !context.name(type).equals(alternative)) {
+                throw error("expected " + array + " but found " + describe(type));
+            }
+        }
+
+        private String component(int array, boolean reference) {
+            String name = (array & KIND) == OBJECT ? context.name(array) : "";
+            if (name.length() < 2 || name.charAt(0) != '[' || reference && isPrimitive(name.substring(1))) {
+                throw error("expected an array of references but found " + describe(array));
+            }
+            return name.substring(1);
+        }
+
+        private boolean convert(int from, int to) {
+            pop(from);
+            push(to);
+            return true;
+        }
+
+        private int load(int index, int expected) {
+            if (index >= maxLocals || isWide(expected) && index + 1 >= maxLocals) {
+                throw error("local " + index + " is out of range");
+            }
+            int type = locals[index];
+            if (expected == OBJECT) {
+                if (!isReference(type)) {
+                    throw error("expected a reference in local " + index + " but found " + describe(type));
+                }
+                return type;
+            }
+            if (type != expected || isWide(expected) && locals[index + 1] != TOP) {
+                throw error("expected " + describe(expected) + " in local " + index + " but found "
+                        + describe(type));
+            }
+            return type;
+        }
+
+        private void store(int index, int type) {
+            int width = isWide(type) ? 2 : 1;
+            if (index + width > maxLocals) {
+                throw error("local " + index + " is out of range");
+            }
+            if (index > 0 && isWide(locals[index - 1])) {
+                locals[index - 1] = TOP;
+            }
+            locals[index] = type;
+            if (width == 2) {
+                locals[index + 1] = TOP;
+            }
+            checkHandlers();
+        }
+
+        private void push(int type) {
+            int width = isWide(type) ? 2 : 1;
+            if (sp + width > maxStack) {
+                throw error("operand stack overflow");
+            }
+            stack[sp++] = type;
+            if (width == 2) {
+                stack[sp++] = TOP;
+            }
+        }
+
+        private int pop(int expected) {
+            if (isWide(expected)) {
+                if (sp < 2 || stack[sp - 1] != TOP || stack[sp - 2] != expected) {
+                    throw error("expected " + describe(expected) + " on the stack but found " + describeTop());
+                }
+                sp -= 2;
+                return expected;
+            }
+            if (sp < 1 || stack[sp - 1] != expected) {
+                throw error("expected " + describe(expected) + " on the stack but found " + describeTop());
+            }
+            return stack[--sp];
+        }
+
+        private int popReference() {
+            if (sp < 1 || !isReference(stack[sp - 1])) {
+                throw error("expected a reference on the stack but found " + describeTop());
+            }
+            return stack[--sp];
+        }
+
+        private void popValue(int expected) {
+            if ((expected & KIND) == OBJECT) {
+                assign(popReference(), expected);
+            } else {
+                pop(expected);
+            }
+        }
+
+        private void assign(int from, int to) {
+            if (!isAssignable(from, to)) {
+                throw error(describe(from) + " is not assignable to " + describe(to));
+            }
+        }
+
+        private void category1(int index) {
+            if (index < 0 || stack[index] == TOP || isWide(stack[index])) {
+                throw error("expected a category 1 value on the stack");
+            }
+        }
+
+        private void block(int index) {
+            if (index < 0 || stack[index] == TOP) {
+                throw error("instruction splits a category 2 value");
+            }
+        }
+
+        /**
+         * Copies the top {@code count} words below the next {@code depth} words, as the dup family does.
+         */
+        private void insert(int count, int depth) {
+            if (sp + count > maxStack) {
+                throw error("operand stack overflow");
+            }
+            int base = sp - count - depth;
+            System.arraycopy(stack, base, stack, base + count, count + depth);
+            System.arraycopy(stack, sp, stack, base, count);
+            sp += count;
+        }
+
+        private void branch(int target) {
+            if (target < 0 || target >= bytes.length || frameAt[target] < 0) {
+                throw error("branch target " + target + " has no stack map frame");
+            }
+            checkFrame(frameAt[target], true);
+        }
+
+        private void checkFrame(int frame, boolean withStack) {
+            int[] frameLocal = frameLocals[frame];
+            for (int i = 0; i < maxLocals; i++) {
+                if (!isAssignable(locals[i], frameLocal[i])) {
+                    throw error("local " + i + " is " + describe(locals[i]) + " but the stack map frame expects "
+                            + describe(frameLocal[i]));
+                }
+            }
+            if (withStack) {
+                int[] frameStack = frameStacks[frame];
+                if (frameStack.length != sp) {
+                    throw error("stack has " + sp + " words but the stack map frame has " + frameStack.length);
+                }
+                for (int i = 0; i < sp; i++) {
+                    if (!isAssignable(stack[i], frameStack[i])) {
+                        throw error("stack slot " + i + " is " + describe(stack[i])
+                                + " but the stack map frame expects " + describe(frameStack[i]));
+                    }
+                }
+            }
+        }
+
+        private void checkHandlers() {
+            for (Code.ExceptionTable handler : code.exceptionTable()) {
+                if (pc < handler.startPc || pc >= handler.endPc) {
+                    continue;
+                }
+                int frame = handler.handlerPc < bytes.length ? frameAt[handler.handlerPc] : -1;
+                if (frame < 0) {
+                    throw error("exception handler " + handler.handlerPc + " has no stack map frame");
+                }
+                checkFrame(frame, false);
+                int caught = handler.catchType == 0 ? context.object("java/lang/Throwable")
+                        : classType(handler.catchType);
+                int[] frameStack = frameStacks[frame];
+                if (frameStack.length != 1 || !isAssignable(caught, frameStack[0])) {
+                    throw error("exception handler " + handler.handlerPc + " frame does not accept "
+                            + context.name(caught));
+                }
+            }
+        }
+
+        private boolean isAssignable(int from, int to) {
+            if (from == to || to == TOP) {
+                return true;
+            }
+            if ((to & KIND) != OBJECT) {
+                return false;
+            }
+            if (from == NULL) {
+                return true;
+            }
+            return (from & KIND) == OBJECT && context.isAssignable(context.name(from), context.name(to));
+        }
+
+        private static boolean isReference(int type) {
+            return type == NULL || type == UNINIT_THIS || (type & KIND) != 0;
+        }
+
+        private int classType(int classIndex) {
+            if (pool.tag(classIndex) != CPInfo.CLASS) {
+                throw error("constant #" + classIndex + " is not a class");
+            }
+            return context.object(pool.className(classIndex));
+        }
+
+        private int type(String descriptor) {
+            switch (descriptor.charAt(0)) {
+                case 'Z':
+                case 'B':
+                case 'C':
+                case 'S':
+                case 'I':
+                    return INT;
+                case 'F':
+                    return FLOAT;
+                case 'J':
+                    return LONG;
+                case 'D':
+                    return DOUBLE;
+                case 'L':
+                    return context.object(descriptor.substring(1, descriptor.length() - 1));
+                case '[':
+                    return context.object(descriptor);
+                default:
+                    throw error("invalid type descriptor " + descriptor);
+            }
+        }
+
+        private String describe(int type) {
+            switch (type) {
+                case TOP:
+                    return "top";
+                case INT:
+                    return "int";
+                case FLOAT:
+                    return "float";
+                case LONG:
+                    return "long";
+                case DOUBLE:
+                    return "double";
+                case NULL:
+                    return "null";
+                case UNINIT_THIS:
+                    return "uninitializedThis";
+                default:
+                    return (type & KIND) == UNINIT ? "uninitialized(" + (type & PAYLOAD) + ')' : context.name(type);
+            }
+        }
+
+        private String describeTop() {
+            return sp == 0 ? "an empty stack" : describe(stack[sp - 1]);
+        }
+
+        private String where() {
+            return context.className.replace('/', '.') + '.' + name + descriptor + (pc >= 0
+                    ? " at pc " + pc + " (" + Opcodes.name(opcode) + "): " : ": ");
+        }
+
+        private VerifyError error(String message) {
+            return new VerifyError(where() + message);
+        }
+    }
+
+    private static boolean isWide(int type) {
+        return type == LONG || type == DOUBLE;
+    }
+}
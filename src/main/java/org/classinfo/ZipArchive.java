@@ -0,0 +1,160 @@
+package org.classinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A memory mapped zip file whose central directory is read directly from the mapping. Stored entries are returned
+ * as slices of the mapping; deflated ones are inflated into a new array with an {@link Inflater} kept per thread and
+ * shared by all archives. Reads may run concurrently. The mapping is released when the archive is garbage
+ * collected.
+ */
+final class ZipArchive {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final ByteBuffer map;
+    private final long base;
+    private final int[] headers;
+    private final String[] names;
+
+    private ZipArchive(ByteBuffer map, long base, int[] headers, String[] names) {
+        this.map = map;
+        this.base = base;
+        this.headers = headers;
+        this.names = names;
+    }
+
+    /**
+     * Maps {@code path}, or returns null for an archive this class does not handle, larger than 2 GB or in the
+     * ZIP64 format, which should be read with {@link java.util.zip.ZipFile} instead.
+     */
+    static ZipArchive open(Path path) throws IOException {
+        ByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int end = map.limit() - END_SIZE;
+        int stop = Math.max(end - 0xFFFF, 0);
+        while (end >= stop && map.getInt(end) != END_HEADER) {
+            end--;
+        }
+        if (end < stop) {
+            throw new ZipException("End of central directory not found: " + path);
+        }
+        int count = map.getShort(end + 10) & 0xFFFF;
+        long directorySize = map.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = map.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            return null;
+        }
+        long base = end - directorySize - directoryOffset;
+        if (base < 0) {
+            throw new ZipException("Invalid central directory: " + path);
+        }
+        int[] headers = new int[count];
+        String[] names = new String[count];
+        int position = (int) (base + directoryOffset);
+        for (int i = 0; i < count; i++) {
+            if (position + 46 > end || map.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory: " + path);
+            }
+            int nameLength = map.getShort(position + 28) & 0xFFFF;
+            int next = position + 46 + nameLength + (map.getShort(position + 30) & 0xFFFF)
+                    + (map.getShort(position + 32) & 0xFFFF);
+            if (next > end) {
+                throw new ZipException("Invalid central directory: " + path);
+            }
+            byte[] name = new byte[nameLength];
+            map.duplicate().position(position + 46).get(name);
+            headers[i] = position;
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            position = next;
+        }
+        return new ZipArchive(map, base, headers, names);
+    }
+
+    int size() {
+        return headers.length;
+    }
+
+    String name(int entry) {
+        return names[entry];
+    }
+
+    /**
+     * Returns the content of {@code entry}.
+     */
+    ByteBuffer read(int entry) throws IOException {
+        int header = headers[entry];
+        int flags = map.getShort(header + 8) & 0xFFFF;
+        int method = map.getShort(header + 10) & 0xFFFF;
+        int compressedSize = map.getInt(header + 20);
+        int size = map.getInt(header + 24);
+        long local = base + (map.getInt(header + 42) & 0xFFFFFFFFL);
+        if ((flags & 1) != 0) {
+            throw new ZipException("Encrypted entry: " + names[entry]);
+        }
+        if (compressedSize < 0 || size < 0 || local + 30 > map.limit() || map.getInt((int) local) != LOCAL_HEADER) {
+            throw new ZipException("Invalid entry: " + names[entry]);
+        }
+        int offset = (int) local;
+        long data = offset + 30 + (map.getShort(offset + 26) & 0xFFFF) + (map.getShort(offset + 28) & 0xFFFF);
+        if (data + compressedSize > map.limit()) {
+            throw new ZipException("Truncated entry: " + names[entry]);
+        }
+        ByteBuffer input = map.duplicate().position((int) data).limit((int) data + compressedSize).slice();
+        switch (method) {
+            case STORED:
+                if (compressedSize != size) {
+                    throw new ZipException("Invalid entry size: " + names[entry]);
+                }
+                return input;
+            case DEFLATED:
+                byte[] output = new byte[size];
+                inflate(INFLATER.get(), input, output, size, names[entry]);
+                return ByteBuffer.wrap(output, 0, size);
+            default:
+                throw new ZipException("Unsupported compression method " + method + ": " + names[entry]);
+        }
+    }
+
+    private static void inflate(Inflater inflater, ByteBuffer input, byte[] output, int size, String name)
+            throws ZipException {
+        inflater.reset();
+        inflater.setInput(input);
+        int length = 0;
+        try {
+            while (length < size && !inflater.finished()) {
+                int count = inflater.inflate(output, length, size - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += count;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(name + ": " + e.getMessage());
+        }
+        if (length != size) {
+            throw new ZipException("Invalid entry size: " + name);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.classinfo.test;
+
+import org.classinfo.ClassIndex;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClassIndexTest {
+
+    @Test
+    void testUpdate() throws IOException {
+        Path jar = Files.createTempFile("classes", ".jar");
+        Path file = Files.createTempFile("classes", ".idx");
+        try {
+            write(jar, AbstractCollection.class, Map.Entry.class);
+            for (boolean hashContents : new boolean[] {false, true}) {
+                Files.delete(file);
+                ClassIndex index = ClassIndex.update(file, List.of(jar), hashContents);
+                assertEquals(index.size(), 2);
+                assertEquals(index.find(ArrayList.class.getName()), -1);
+                int id = index.find(AbstractCollection.class.getName());
+                assertEquals(index.getSuperClassName(id), Object.class.getName());
+                assertEquals(index.getInterfaceNames(id), new String[] {Collection.class.getName()});
+                assertEquals(index.getSource(index.getSourceOf(id)), jar.toAbsolutePath().normalize().toString());
+                List<String> methods = new ArrayList<>();
+                for (int i = 0; i < index.getMethodCount(id); i++) {
+                    methods.add(index.getMethodName(id, i) + index.getMethodDescriptor(id, i));
+                }
+                assertTrue(methods.contains("isEmpty()Z"), methods.toString());
+                assertEquals(index.getSuperClassName(index.find(Map.Entry.class.getName())), Object.class.getName());
+
+                ClassIndex reopened = ClassIndex.open(file);
+                assertEquals(reopened.getClassName(id), AbstractCollection.class.getName());
+
+                write(jar, AbstractCollection.class, ArrayList.class);
+                Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+                index = ClassIndex.update(file, List.of(jar), hashContents);
+                assertEquals(index.find(Map.Entry.class.getName()), -1);
+                id = index.find(ArrayList.class.getName());
+                assertEquals(index.getSuperClassName(id), "java.util.AbstractList");
+                assertTrue(Arrays.asList(index.getInterfaceNames(id)).contains(List.class.getName()));
+                write(jar, AbstractCollection.class, Map.Entry.class);
+            }
+        } finally {
+            Files.deleteIfExists(jar);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void write(Path jar, Class<?>... classes) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Class<?> cls : classes) {
+                String name = cls.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new ZipEntry(name));
+                try (InputStream in = cls.getResourceAsStream('/' + name)) {
+                    in.transferTo(out);
+                }
+            }
+        }
+    }
+}
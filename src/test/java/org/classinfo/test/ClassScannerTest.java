@@ -0,0 +1,412 @@
+package org.classinfo.test;
+
+import org.classinfo.AnnotationIndex;
+import org.classinfo.BytecodeStatistics;
+import org.classinfo.CPInfo;
+import org.classinfo.CallGraph;
+import org.classinfo.ClassHeader;
+import org.classinfo.ClassHierarchy;
+import org.classinfo.ClassInfo;
+import org.classinfo.ClassScanner;
+import org.classinfo.ClassStripper;
+import org.classinfo.ClassWriter;
+import org.classinfo.ConstantPool;
+import org.classinfo.ClassVisitor;
+import org.classinfo.Opcodes;
+import org.classinfo.Verifier;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.expectThrows;
+import static org.testng.Assert.assertTrue;
+
+public class ClassScannerTest {
+
+    private static final byte[] UNICODE_TEXT = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+    private static final Class<?>[] CLASSES = {AbstractCollection.class, Map.Entry.class, ClassScannerTest.class};
+
+    @Test
+    void testScanModuleLayer() throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new ClassScanner(executor, 16, ClassInfo.SKIP_CODE).scan(ModuleLayer.boot(), (name, classInfo) -> {
+                if (name.equals("java/lang/Object.class")) {
+                    assertEquals(classInfo.getClassName(), Object.class.getName());
+                }
+                count.incrementAndGet();
+            });
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(count.get() > 1000, "only " + count + " classes scanned");
+    }
+
+    @Test
+    void testHierarchy() throws IOException {
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> hierarchy.add(classInfo));
+        assertTrue(hierarchy.getSupertypes(ArrayList.class.getName()).containsAll(
+                List.of(AbstractList.class.getName(), List.class.getName(), Collection.class.getName(),
+                        Object.class.getName())));
+        assertTrue(hierarchy.getSubtypes(AbstractCollection.class.getName()).contains(ArrayList.class.getName()));
+        assertTrue(hierarchy.getImplementors(List.class.getName()).contains(ArrayList.class.getName()));
+        assertFalse(hierarchy.getImplementors(Collection.class.getName()).contains(List.class.getName()));
+        assertTrue(hierarchy.isAssignableFrom(Collection.class.getName(), ArrayList.class.getName()));
+        assertFalse(hierarchy.isAssignableFrom(ArrayList.class.getName(), Collection.class.getName()));
+    }
+
+    @Test
+    void testCallGraph() throws IOException {
+        CallGraph graph = new CallGraph();
+        new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> graph.add(classInfo));
+        String list = ArrayList.class.getName();
+        int add = graph.id(list, "add", "(Ljava/lang/Object;)Z");
+        int helper = graph.id(list, "add", "(Ljava/lang/Object;[Ljava/lang/Object;I)V");
+        int[] callees = graph.getCallees(add);
+        int[] opcodes = graph.getCallOpcodes(add);
+        boolean found = false;
+        for (int i = 0; i < callees.length; i++) {
+            found |= callees[i] == helper && opcodes[i] == Opcodes.INVOKEVIRTUAL;
+        }
+        assertTrue(found);
+        assertTrue(IntStream.of(graph.getCallers(helper)).anyMatch(id -> id == add));
+        assertTrue(graph.getEdgeCount() > 100_000, graph.getEdgeCount() + " edges");
+        int edges = graph.getEdgeCount();
+        graph.add(new ClassInfo(ArrayList.class));
+        assertEquals(graph.getEdgeCount(), edges);
+        assertEquals(graph.getCallees(add), callees);
+    }
+
+    @Test
+    void testVerifier() throws IOException {
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> hierarchy.add(classInfo));
+        Verifier verifier = new Verifier(hierarchy);
+        AtomicInteger count = new AtomicInteger();
+        Set<String> errors = ConcurrentHashMap.newKeySet();
+        new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> {
+            try {
+                verifier.verify(classInfo);
+                count.incrementAndGet();
+            } catch (VerifyError e) {
+                errors.add(e.getMessage());
+            }
+        });
+        assertEquals(errors, Set.of());
+        assertTrue(count.get() > 1000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        copy(VerifierSample.class, out);
+        byte[] bytes = out.toByteArray();
+        verifier.verify(ClassInfo.parse(ByteBuffer.wrap(bytes)));
+        // iload_0, bipush 31, imul, bipush 7, iadd, ireturn: replace iload_0 with fload_0
+        byte[] sample = {0x1a, 0x10, 0x1f, 0x68, 0x10, 0x07, 0x60, (byte) 0xac};
+        int offset = 0;
+        while (!Arrays.equals(bytes, offset, offset + sample.length, sample, 0, sample.length)) {
+            offset++;
+        }
+        bytes[offset] = 0x22;
+        VerifyError error = expectThrows(VerifyError.class,
+                () -> verifier.verify(ClassInfo.parse(ByteBuffer.wrap(bytes))));
+        assertTrue(error.getMessage().contains("hash(I)I at pc 0 (fload_0)"), error.getMessage());
+    }
+
+    static class VerifierSample {
+
+        static int hash(int value) {
+            return value * 31 + 7;
+        }
+    }
+
+    @Test
+    void testScanJarAndDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("classes");
+        Path jar = Files.createTempFile("classes", ".jar");
+        try {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                for (Class<?> cls : CLASSES) {
+                    String name = cls.getName().replace('.', '/') + ".class";
+                    out.putNextEntry(new ZipEntry(name));
+                    copy(cls, out);
+                    Path file = directory.resolve(name);
+                    Files.createDirectories(file.getParent());
+                    try (OutputStream fileOut = Files.newOutputStream(file)) {
+                        copy(cls, fileOut);
+                    }
+                }
+            }
+            Set<String> expected = Stream.of(CLASSES).map(Class::getName).collect(Collectors.toSet());
+            for (Path path : new Path[] {jar, directory}) {
+                Set<String> names = ConcurrentHashMap.newKeySet();
+                new ClassScanner().scan(path, (name, classInfo) -> names.add(classInfo.getClassName()));
+                assertEquals(names, expected);
+                try (Stream<ClassInfo> stream = new ClassScanner().stream(path)) {
+                    assertEquals(stream.map(ClassInfo::getClassName).collect(Collectors.toSet()), expected);
+                }
+            }
+        } finally {
+            Files.delete(jar);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void testAbandonedStream() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertTrue(findFirst(new ClassScanner(executor, 4, 0)));
+            boolean stopped = false;
+            for (int i = 0; i < 100 && !stopped; i++) {
+                System.gc();
+                Thread.sleep(50);
+                stopped = Thread.getAllStackTraces().keySet().stream()
+                        .noneMatch(thread -> thread.getName().equals("ClassScanner"));
+            }
+            assertTrue(stopped, "producer thread still running");
+            assertEquals(executor.submit(() -> "ran").get(3, TimeUnit.SECONDS), "ran");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean findFirst(ClassScanner scanner) {
+        return scanner.stream(ModuleLayer.boot()).findFirst().isPresent();
+    }
+
+    @Test
+    void testScanArchive() throws Exception {
+        Path jar = Files.createTempFile("classes", ".jar");
+        try {
+            Map<String, byte[]> classes = new ConcurrentHashMap<>();
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new ZipEntry("readme.txt"));
+                out.write(UNICODE_TEXT);
+                for (Class<?> cls : CLASSES) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    copy(cls, bytes);
+                    classes.put(cls.getName(), bytes.toByteArray());
+                    ZipEntry entry = new ZipEntry(cls.getName().replace('.', '/') + ".class");
+                    if (cls == ClassScannerTest.class) {
+                        CRC32 crc = new CRC32();
+                        crc.update(bytes.toByteArray());
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(bytes.size());
+                        entry.setCrc(crc.getValue());
+                    }
+                    out.putNextEntry(entry);
+                    bytes.writeTo(out);
+                }
+            }
+            for (int flags : new int[]{ClassInfo.KEEP_SOURCE, ClassInfo.KEEP_SOURCE | ClassInfo.LAZY_POOL}) {
+                Map<String, ClassInfo> scanned = new ConcurrentHashMap<>();
+                new ClassScanner(ForkJoinPool.commonPool(), 2, flags).scan(jar,
+                        (name, classInfo) -> scanned.put(classInfo.getClassName(), classInfo));
+                assertEquals(scanned.keySet(), classes.keySet());
+                for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                    assertEquals(new ClassWriter().toByteArray(scanned.get(entry.getKey())), entry.getValue(),
+                            entry.getKey());
+                }
+            }
+            List<ClassHeader> headers = Collections.synchronizedList(new ArrayList<>());
+            new ClassScanner(Runnable::run, 1, 0).accept(jar, () -> new ClassVisitor() {
+                @Override
+                public void visitHeader(ClassHeader header) {
+                    headers.add(header);
+                }
+            });
+            assertEquals(headers.size(), CLASSES.length);
+            for (ClassHeader header : headers) {
+                Class<?> cls = Class.forName(header.getClassName());
+                assertEquals(header.getInterfaceNames(), Stream.of(cls.getInterfaces()).map(Class::getName)
+                        .toArray(String[]::new), cls.getName());
+            }
+            ByteBuffer zip = ByteBuffer.wrap(Files.readAllBytes(jar)).order(ByteOrder.LITTLE_ENDIAN);
+            int directory = zip.getInt(zip.limit() - 6);
+            zip.putShort(directory + 28, (short) 0xFFFF);
+            Files.write(jar, zip.array());
+            expectThrows(ZipException.class, () -> new ClassScanner().scan(jar, (name, classInfo) -> {
+            }));
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    @Test
+    void testBytecodeStatistics() throws IOException {
+        BytecodeStatistics statistics = new BytecodeStatistics();
+        new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> statistics.add(classInfo));
+        assertTrue(statistics.getClassCount() > 1000);
+        assertTrue(statistics.getOpcodeCount(Opcodes.INVOKEVIRTUAL) > statistics.getOpcodeCount(Opcodes.JSR));
+        long codes = 0;
+        for (int bucket = 0; bucket < BytecodeStatistics.BUCKETS; bucket++) {
+            codes += statistics.getBucketCount(BytecodeStatistics.CODE_LENGTH, bucket);
+        }
+        assertEquals(codes, statistics.getCodeCount());
+        assertEquals(statistics.getAttributeCount("Code"), statistics.getCodeCount());
+        assertEquals(statistics.getBucketCount(BytecodeStatistics.CODE_LENGTH, 0), 0);
+        assertTrue(statistics.getMax(BytecodeStatistics.CODE_LENGTH) < 65536);
+        assertTrue(statistics.getTagCount(CPInfo.UTF8) > statistics.getTagCount(CPInfo.CLASS));
+
+        BytecodeStatistics one = new BytecodeStatistics();
+        one.add(new ClassInfo(ClassScannerTest.class));
+        assertEquals(one.getClassCount(), 1);
+        StringBuilder csv = new StringBuilder();
+        one.writeCsv(csv);
+        assertTrue(csv.toString().startsWith("section,name,value\nsummary,classes,1\n"), csv.toString());
+        assertTrue(csv.toString().contains("\nopcode,invokevirtual,"), csv.toString());
+        String json = one.toString();
+        assertTrue(json.contains("\"classes\": 1,"), json);
+        assertTrue(json.contains("\"Code\": {\"count\": "), json);
+    }
+
+    @Test
+    void testAnnotationIndex() throws IOException {
+        AnnotationIndex built = AnnotationIndex.build(new ClassScanner(), ModuleLayer.boot());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        built.write(bytes);
+        AnnotationIndex index = AnnotationIndex.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(index.size(), built.size());
+        assertTrue(index.getAnnotatedClasses("java.lang.FunctionalInterface").contains("java.lang.Runnable"));
+
+        int deprecated = index.type("java.lang.Deprecated");
+        String since = null;
+        for (int i = 0; i < index.getAnnotationCount(deprecated); i++) {
+            int annotation = index.getFirstAnnotation(deprecated) + i;
+            if (index.getKind(annotation) == AnnotationIndex.METHOD
+                    && index.getClassName(annotation).equals("java.lang.Thread")
+                    && index.getMemberName(annotation).equals("stop")) {
+                since = (String) index.getElementValue(annotation, "since").getValue();
+            }
+        }
+        assertEquals(since, "1.2");
+
+        int retention = index.type("java.lang.annotation.Retention");
+        int target = index.type("java.lang.annotation.Target");
+        for (int i = 0; i < index.getAnnotationCount(target); i++) {
+            int annotation = index.getFirstAnnotation(target) + i;
+            if (index.getClassName(annotation).equals("java.lang.Deprecated")) {
+                AnnotationIndex.Value value = index.getElementValue(annotation, "value");
+                assertEquals(value.getTag(), '[');
+                assertEquals(value.get(0).getEnumType(), "java.lang.annotation.ElementType");
+                assertEquals(value.toString(), built.getElementValue(built.getFirstAnnotation(
+                        built.type("java.lang.annotation.Target")) + i, "value").toString());
+            }
+        }
+        assertTrue(index.getAnnotationCount(retention) > 0);
+        assertEquals(index.type("java.lang.NoSuchAnnotation"), -1);
+    }
+
+    @Test
+    void testStripper() throws Exception {
+        Path jar = Files.createTempFile("classes", ".jar");
+        Path stripped = Files.createTempFile("stripped", ".jar");
+        try {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new ZipEntry("readme.txt"));
+                out.write(UNICODE_TEXT);
+                for (Class<?> cls : CLASSES) {
+                    out.putNextEntry(new ZipEntry(cls.getName().replace('.', '/') + ".class"));
+                    copy(cls, out);
+                }
+            }
+            new ClassStripper().strip(jar, stripped);
+            assertTrue(Files.size(stripped) < Files.size(jar));
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            new ClassScanner(ForkJoinPool.commonPool(), 4, ClassInfo.VALIDATE).scan(stripped,
+                    (name, classInfo) -> names.add(classInfo.getClassName()));
+            assertEquals(names, Stream.of(CLASSES).map(Class::getName).collect(Collectors.toSet()));
+            try (ZipFile zip = new ZipFile(stripped.toFile())) {
+                try (InputStream in = zip.getInputStream(zip.getEntry("readme.txt"))) {
+                    assertEquals(in.readAllBytes(), UNICODE_TEXT);
+                }
+                ZipEntry entry = zip.getEntry(ClassScannerTest.class.getName().replace('.', '/') + ".class");
+                byte[] bytes;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    bytes = in.readAllBytes();
+                }
+                Set<String> attributes = new HashSet<>();
+                ClassInfo.accept(ByteBuffer.wrap(bytes), new ClassVisitor() {
+                    @Override
+                    public boolean visitAttribute(String name, ByteBuffer content) {
+                        attributes.add(name);
+                        return true;
+                    }
+                }, 0);
+                assertTrue(attributes.contains("Code"));
+                assertFalse(attributes.contains("LineNumberTable"), attributes.toString());
+                assertFalse(attributes.contains("LocalVariableTable"), attributes.toString());
+                // this class has "LineNumberTable" as a string constant, AbstractCollection does not
+                try (InputStream in = zip.getInputStream(zip.getEntry("java/util/AbstractCollection.class"))) {
+                    bytes = in.readAllBytes();
+                }
+                ConstantPool pool = ClassInfo.parse(ByteBuffer.wrap(bytes)).getConstantPool();
+                assertTrue(pool.size() < new ClassInfo(AbstractCollection.class).getConstantPool().size());
+                for (int i = 1; i < pool.size(); i++) {
+                    assertFalse(pool.tag(i) == CPInfo.UTF8 && pool.utf8(i).equals("LineNumberTable"));
+                }
+            }
+            ClassHierarchy hierarchy = new ClassHierarchy();
+            new ClassScanner().scan(ModuleLayer.boot(), (name, classInfo) -> hierarchy.add(classInfo));
+            new ClassScanner().scan(stripped, (name, classInfo) -> hierarchy.add(classInfo));
+            for (Class<?> cls : new Class<?>[]{ClassScannerTest.class, ClassInfo.class, Test.class}) {
+                Path classPath = Path.of(cls.getProtectionDomain().getCodeSource().getLocation().toURI());
+                new ClassScanner().scan(classPath, (name, classInfo) -> hierarchy.add(classInfo));
+            }
+            Verifier verifier = new Verifier(hierarchy);
+            AtomicInteger verified = new AtomicInteger();
+            new ClassScanner().scan(stripped, (name, classInfo) -> {
+                verifier.verify(classInfo);
+                verified.incrementAndGet();
+            });
+            assertEquals(verified.get(), CLASSES.length);
+        } finally {
+            Files.delete(jar);
+            Files.delete(stripped);
+        }
+    }
+
+    private static void copy(Class<?> cls, OutputStream out) throws IOException {
+        try (InputStream in = cls.getResourceAsStream('/' + cls.getName().replace('.', '/') + ".class")) {
+            in.transferTo(out);
+        }
+    }
+}
@@ -1,16 +1,60 @@
 package org.classinfo.test;
 
+import org.classinfo.ClassEdits;
+import org.classinfo.ClassHeader;
+import org.classinfo.CPInfo;
 import org.classinfo.ClassInfo;
+import org.classinfo.ClassInfoCache;
+import org.classinfo.ClassParser;
+import org.classinfo.ClassStripper;
+import org.classinfo.ClassVisitor;
+import org.classinfo.ClassWriter;
+import org.classinfo.Code;
+import org.classinfo.ConstantPool;
+import org.classinfo.Descriptor;
+import org.classinfo.InstructionCursor;
+import org.classinfo.MethodInfo;
+import org.classinfo.ParseMetrics;
+import org.classinfo.Opcodes;
+import org.classinfo.SymbolTable;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.module.ModuleReader;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
 import java.lang.module.ResolvedModule;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
 
 public class ClassTest {
 
+    private static final String UNICODE = "caf\u00e9 \u0000 \uD83D\uDE00";
+
     @Test
     void testClass() throws IOException {
     	ClassInfo classInfo = new ClassInfo(AbstractCollection.class);
@@ -18,6 +62,452 @@ public class ClassTest {
     	System.out.println(classInfo);
     }
 
+    @Test
+    void testParse() throws IOException {
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        String expected = new ClassInfo(AbstractCollection.class).toString();
+        assertEquals(ClassInfo.parse(ByteBuffer.wrap(bytes)).toString(), expected);
+        ClassInfo lazy = ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.LAZY_POOL);
+        lazy.validate();
+        assertEquals(lazy.toString(), expected);
+        Path path = Files.createTempFile("AbstractCollection", ".class");
+        try {
+            Files.write(path, bytes);
+            assertEquals(ClassInfo.parse(path).toString(), expected);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testSkipAttributes() throws IOException {
+        int flags = ClassInfo.SKIP_CODE | ClassInfo.SKIP_DEBUG | ClassInfo.SKIP_FRAMES | ClassInfo.SKIP_ANNOTATIONS;
+        ClassInfo classInfo = new ClassInfo(AbstractCollection.class, flags);
+        classInfo.validate();
+        assertEquals(classInfo.toString(), new ClassInfo(AbstractCollection.class).toString());
+    }
+
+    @Test
+    void testCache() throws IOException {
+        ClassInfoCache cache = new ClassInfoCache(1);
+        ClassInfo classInfo = cache.get(AbstractCollection.class);
+        assertSame(cache.get(AbstractCollection.class), classInfo);
+        cache.get(Collection.class);
+        assertNotSame(cache.get(AbstractCollection.class), classInfo);
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        classInfo = cache.get(ByteBuffer.wrap(bytes));
+        assertSame(cache.get(ByteBuffer.wrap(bytes.clone())), classInfo);
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 4);
+        assertEquals(cache.getEvictionCount(), 3);
+    }
+
+    @Test
+    void testCacheUnloading() throws Exception {
+        ClassInfoCache cache = new ClassInfoCache(10);
+        URL classes = ClassInfo.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+        Class<?> cls = loader.loadClass(Opcodes.class.getName());
+        assertEquals(cache.get(cls).getClassName(), Opcodes.class.getName());
+        assertEquals(cache.size(), 1);
+        WeakReference<ClassLoader> ref = new WeakReference<>(loader);
+        loader.close();
+        loader = null;
+        cls = null;
+        for (int i = 0; i < 50 && (ref.get() != null || cache.size() > 0); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    void testSymbolTable() throws IOException {
+        SymbolTable symbols = new SymbolTable(2);
+        String[] objects = new String[2];
+        Class<?>[] classes = {AbstractCollection.class, Collection.class};
+        for (int c = 0; c < classes.length; c++) {
+            byte[] bytes;
+            try (InputStream in = classes[c].getResourceAsStream(classes[c].getSimpleName() + ".class")) {
+                bytes = in.readAllBytes();
+            }
+            ConstantPool pool = ClassInfo.parse(ByteBuffer.wrap(bytes), 0, symbols).getConstantPool();
+            for (int i = 1; i < pool.size(); i++) {
+                if (pool.tag(i) == CPInfo.UTF8 && pool.utf8(i).equals("java/lang/Object")) {
+                    objects[c] = pool.utf8(i);
+                }
+            }
+        }
+        assertEquals(objects[0], "java/lang/Object");
+        assertSame(objects[0], objects[1]);
+        assertTrue(symbols.size() > 0);
+    }
+
+    @Test
+    void testModifiedUtf8() throws IOException {
+        ConstantPool pool = new ClassInfo(ClassTest.class).getConstantPool();
+        boolean found = false;
+        for (int i = 1; i < pool.size(); i++) {
+            found |= pool.tag(i) == CPInfo.UTF8 && pool.utf8(i).equals(UNICODE);
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    void testValidateWhileParsing() throws IOException {
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        ConstantPool pool = ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.VALIDATE).getConstantPool();
+        int index = 1;
+        while (pool.tag(index) != CPInfo.METHOD_REF) {
+            index++;
+        }
+        int offset = constantOffset(bytes, index);
+        assertEquals(bytes[offset], CPInfo.METHOD_REF);
+        bytes[offset + 1] = (byte) (index >>> 8);
+        bytes[offset + 2] = (byte) index;
+        ClassInfo.parse(ByteBuffer.wrap(bytes));
+        assertThrows(ClassFormatError.class, () -> ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.VALIDATE));
+    }
+
+    /**
+     * Returns the offset of constant {@code index} in a class file, whose pool starts at offset 10.
+     */
+    private static int constantOffset(byte[] bytes, int index) {
+        int offset = 10;
+        for (int i = 1; i < index; i++) {
+            switch (bytes[offset]) {
+                case CPInfo.UTF8:
+                    offset += 3 + ((bytes[offset + 1] & 0xFF) << 8 | bytes[offset + 2] & 0xFF);
+                    break;
+                case CPInfo.LONG:
+                case CPInfo.DOUBLE:
+                    offset += 9;
+                    i++;
+                    break;
+                case CPInfo.CLASS:
+                case CPInfo.STRING:
+                case CPInfo.METHOD_TYPE:
+                case CPInfo.MODULE:
+                case CPInfo.PACKAGE:
+                    offset += 3;
+                    break;
+                case CPInfo.METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                default:
+                    offset += 5;
+            }
+        }
+        return offset;
+    }
+
+    @Test
+    void testParser() throws IOException {
+        ClassParser parser = new ClassParser(ClassInfo.KEEP_SOURCE, new SymbolTable());
+        Class<?>[] classes = {Character.class, Object.class, AbstractCollection.class, String.class, Set.class};
+        for (int round = 0; round < 2; round++) {
+            for (Class<?> cls : classes) {
+                byte[] bytes;
+                try (InputStream in = cls.getResourceAsStream(cls.getSimpleName() + ".class")) {
+                    bytes = in.readAllBytes();
+                }
+                ClassInfo expected = ClassInfo.parse(ByteBuffer.wrap(bytes));
+                List<String> members = new ArrayList<>();
+                String[] className = new String[1];
+                ClassVisitor visitor = new ClassVisitor() {
+                    @Override
+                    public void visitHeader(ClassHeader header) {
+                        className[0] = header.getClassName();
+                        assertEquals(header.getConstantPool().size(), expected.getConstantPool().size());
+                    }
+
+                    @Override
+                    public boolean visitMethod(int accessFlags, String name, String descriptor) {
+                        members.add(name + descriptor);
+                        return false;
+                    }
+                };
+                if (round == 0) {
+                    parser.accept(new ByteArrayInputStream(bytes), visitor);
+                } else {
+                    parser.accept(ByteBuffer.wrap(bytes), visitor);
+                }
+                assertEquals(className[0], cls.getName());
+                assertEquals(members.size(), expected.getMethods().length);
+                assertEquals(members.get(0), expected.getMethods()[0].getName()
+                        + expected.getMethods()[0].getDescriptor());
+                ClassInfo snapshot = parser.parse(new ByteArrayInputStream(bytes));
+                assertEquals(new ClassWriter().toByteArray(snapshot), bytes);
+            }
+            parser.reset();
+        }
+    }
+
+    @Test
+    void testMetrics() throws IOException {
+        ParseMetrics metrics = new ParseMetrics(0);
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        ClassInfo classInfo = ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.VALIDATE, null, metrics);
+        ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.SKIP_CODE, null, metrics);
+        assertEquals(metrics.getClassCount(), 2);
+        assertEquals(metrics.getByteCount(), 2L * bytes.length);
+        assertEquals(metrics.getSlowClassCount(), 2);
+        long code = Arrays.stream(classInfo.getMethods()).filter(method -> method.getCode() != null).count();
+        assertEquals(metrics.getAttributeCount("Code"), 2 * code);
+        assertTrue(metrics.getAttributeBytes("Code") > metrics.getAttributeBytes("LineNumberTable"));
+        assertTrue(metrics.getNanos(ParseMetrics.METHODS) > 0);
+        assertTrue(metrics.getNanos(ParseMetrics.VALIDATE) > 0);
+        assertEquals(metrics.getErrorCount(), 0);
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(IOException.class, () -> ClassInfo.parse(ByteBuffer.wrap(truncated), 0, null, metrics));
+        assertEquals(metrics.getErrorCount(), 1);
+        assertEquals(metrics.getClassCount(), 2);
+        assertTrue(metrics.toString().contains("Code"), metrics.toString());
+        metrics.reset();
+        assertEquals(metrics.getClassCount(), 0);
+        assertEquals(metrics.getAttributeCounts(), Map.of());
+    }
+
+    @Test
+    void testWriter() throws IOException {
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        ClassWriter writer = new ClassWriter(16);
+        assertThrows(IllegalArgumentException.class, () -> writer.toByteArray(ClassInfo.parse(ByteBuffer.wrap(bytes))));
+        ClassInfo classInfo = ClassInfo.parse(ByteBuffer.wrap(bytes),
+                ClassInfo.SKIP_CODE | ClassInfo.LAZY_POOL | ClassInfo.KEEP_SOURCE);
+        assertEquals(writer.toByteArray(classInfo), bytes);
+
+        ClassEdits edits = new ClassEdits();
+        edits.setAccessFlags(classInfo.getAccessFlags() | Modifier.FINAL);
+        MethodInfo method = classInfo.getMethods()[0];
+        edits.setAccessFlags(method, method.getAccessFlags() | Modifier.SYNCHRONIZED);
+        byte[] flagged = writer.toByteArray(classInfo, edits);
+        assertEquals(flagged.length, bytes.length);
+        ClassInfo parsed = ClassInfo.parse(ByteBuffer.wrap(flagged));
+        assertEquals(parsed.getAccessFlags(), classInfo.getAccessFlags() | Modifier.FINAL);
+        assertEquals(parsed.getMethods()[0].getAccessFlags(), method.getAccessFlags() | Modifier.SYNCHRONIZED);
+        assertEquals(parsed.getMethods()[1].getAccessFlags(), classInfo.getMethods()[1].getAccessFlags());
+
+        Set<String> debug = Set.of("LineNumberTable", "LocalVariableTable", "Signature");
+        edits.removeAttributes(debug::contains);
+        byte[] stripped = writer.toByteArray(classInfo, edits);
+        assertTrue(stripped.length < bytes.length);
+        assertEquals(writer.toByteArray(classInfo), bytes);
+        parsed = ClassInfo.parse(ByteBuffer.wrap(stripped), ClassInfo.VALIDATE);
+        assertEquals(parsed.getAccessFlags(), classInfo.getAccessFlags() | Modifier.FINAL);
+        assertEquals(parsed.getMethods()[0].getAccessFlags(), method.getAccessFlags() | Modifier.SYNCHRONIZED);
+        assertEquals(parsed.getMethods().length, classInfo.getMethods().length);
+        Set<String> names = new HashSet<>();
+        ClassInfo.accept(ByteBuffer.wrap(stripped), new ClassVisitor() {
+            @Override
+            public boolean visitAttribute(String name, ByteBuffer content) {
+                names.add(name);
+                return true;
+            }
+        }, 0);
+        assertTrue(names.contains("Code"));
+        assertFalse(names.stream().anyMatch(debug::contains), names.toString());
+        assertEquals(writer.toByteArray(ClassInfo.parse(ByteBuffer.wrap(stripped), ClassInfo.KEEP_SOURCE)), stripped);
+    }
+
+    @Test
+    void testWriteRecord() throws IOException {
+        byte[] bytes = recordClass();
+        ClassInfo classInfo = ClassInfo.parse(ByteBuffer.wrap(bytes), ClassInfo.KEEP_SOURCE);
+        ClassEdits edits = new ClassEdits();
+        edits.removeAttributes(ClassStripper.DEBUG_ATTRIBUTES::contains);
+        byte[] written = new ClassWriter().toByteArray(classInfo, edits);
+        assertEquals(written.length, bytes.length - 12);
+        List<String> attributes = new ArrayList<>();
+        ClassInfo.accept(ByteBuffer.wrap(written), new ClassVisitor() {
+            @Override
+            public boolean visitAttribute(String name, ByteBuffer content) {
+                attributes.add(name + ' ' + content.remaining());
+                return true;
+            }
+        }, 0);
+        assertEquals(attributes, List.of("Record 8"));
+
+        byte[] stripped = new ClassStripper().strip(ByteBuffer.wrap(bytes));
+        ConstantPool pool = ClassInfo.parse(ByteBuffer.wrap(stripped), ClassInfo.VALIDATE).getConstantPool();
+        assertEquals(pool.size(), classInfo.getConstantPool().size() - 2);
+        assertEquals(pool.utf8(6), "x");
+    }
+
+    /**
+     * Returns {@code record R(@A int x)}, with {@code A} retained in the class file only.
+     */
+    private static byte[] recordClass() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(60);
+        String[] utf8 = {"R", "java/lang/Record", "Record", "x", "I", "RuntimeInvisibleAnnotations", "LA;"};
+        out.writeShort(3 + utf8.length);
+        out.writeByte(CPInfo.CLASS);
+        out.writeShort(3);
+        out.writeByte(CPInfo.CLASS);
+        out.writeShort(4);
+        for (String value : utf8) {
+            out.writeByte(CPInfo.UTF8);
+            out.writeUTF(value);
+        }
+        out.writeShort(Modifier.FINAL | 0x20);
+        out.writeShort(1);
+        out.writeShort(2);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(1);
+        out.writeShort(5);
+        out.writeInt(20);
+        out.writeShort(1);
+        out.writeShort(6);
+        out.writeShort(7);
+        out.writeShort(1);
+        out.writeShort(8);
+        out.writeInt(6);
+        out.writeShort(1);
+        out.writeShort(9);
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void testReadHeader() throws IOException {
+        byte[] bytes;
+        try (InputStream in = AbstractCollection.class.getResourceAsStream("AbstractCollection.class")) {
+            bytes = in.readAllBytes();
+        }
+        ClassHeader header = ClassInfo.readHeader(ByteBuffer.wrap(bytes));
+        header.validate();
+        assertEquals(header.getClassName(), AbstractCollection.class.getName());
+        assertEquals(header.getSuperClassName(), Object.class.getName());
+        assertEquals(header.getInterfaceNames(), new String[] {Collection.class.getName()});
+        assertEquals(header.toString(), new ClassInfo(AbstractCollection.class).toString());
+    }
+
+    @Test
+    void testInstructions() throws IOException {
+        int switches = 0;
+        for (Class<?> cls : new Class<?>[] {AbstractCollection.class, Character.class, TimeUnit.class}) {
+            for (MethodInfo method : new ClassInfo(cls).getMethods()) {
+                Code code = method.getCode();
+                if (code == null) {
+                    continue;
+                }
+                InstructionCursor cursor = code.instructions();
+                int end = 0;
+                while (cursor.next()) {
+                    assertEquals(cursor.pc(), end);
+                    end += cursor.length();
+                    if (cursor.opcode() == Opcodes.TABLESWITCH || cursor.opcode() == Opcodes.LOOKUPSWITCH) {
+                        switches++;
+                        for (int i = 0; i < cursor.switchCount(); i++) {
+                            assertTrue(cursor.switchTarget(i) >= 0 && cursor.switchTarget(i) < code.getCodeLength());
+                        }
+                    }
+                }
+                assertEquals(end, code.getCodeLength());
+            }
+        }
+        assertTrue(switches > 0);
+    }
+
+    @Test
+    void testMalformedSwitch() throws IOException {
+        int[][] tables = {
+                {Opcodes.TABLESWITCH, 0, Integer.MIN_VALUE, Integer.MAX_VALUE},
+                {Opcodes.LOOKUPSWITCH, 0, 0x20000000}};
+        for (int[] table : tables) {
+            Code code = new ClassInfo(new ByteArrayInputStream(switchClass(table))).getMethods()[0].getCode();
+            InstructionCursor cursor = code.instructions();
+            assertTrue(cursor.next());
+            assertThrows(ClassFormatError.class, cursor::next);
+        }
+    }
+
+    /**
+     * Returns a class whose only method is {@code iconst_0}, a switch opcode with {@code table} as its padded
+     * operands, and {@code return}.
+     */
+    private static byte[] switchClass(int[] table) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        String[] utf8 = {"T", "java/lang/Object", "m", "()V", "Code"};
+        out.writeShort(3 + utf8.length);
+        out.writeByte(CPInfo.CLASS);
+        out.writeShort(3);
+        out.writeByte(CPInfo.CLASS);
+        out.writeShort(4);
+        for (String value : utf8) {
+            out.writeByte(CPInfo.UTF8);
+            out.writeUTF(value);
+        }
+        out.writeShort(0x21);
+        out.writeShort(1);
+        out.writeShort(2);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(1);
+        out.writeShort(Modifier.STATIC);
+        out.writeShort(5);
+        out.writeShort(6);
+        out.writeShort(1);
+        int codeLength = 5 + 4 * (table.length - 1);
+        out.writeShort(7);
+        out.writeInt(12 + codeLength);
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeInt(codeLength);
+        out.writeByte(Opcodes.ICONST_0);
+        out.writeByte(table[0]);
+        out.writeShort(0);
+        for (int i = 1; i < table.length; i++) {
+            out.writeInt(table[i]);
+        }
+        out.writeByte(Opcodes.RETURN);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void testDescriptor() {
+        Descriptor descriptor = Descriptor.of("(I[[Ljava/lang/String;J)[Z");
+        assertSame(Descriptor.of(new String("(I[[Ljava/lang/String;J)[Z")), descriptor);
+        assertEquals(descriptor.toSignature("m"), "boolean[] m(int, java.lang.String[][], long)");
+        assertEquals(descriptor.getParameterCount(), 3);
+        assertEquals(descriptor.getParameterSlots(), 4);
+        assertEquals(descriptor.getParameterSort(1), 'L');
+        assertEquals(descriptor.getParameterDimensions(1), 2);
+        assertEquals(descriptor.getSort(), 'Z');
+        assertEquals(Descriptor.of("Ljava/util/List;").toSignature("f"), "java.util.List f");
+    }
+
     @Test
     void testAllClasses() throws IOException {
         for (ResolvedModule module : ModuleLayer.boot().configuration().modules()) {
@@ -0,0 +1,77 @@
+package org.classinfo.test;
+
+import org.classinfo.AttributeInfo;
+import org.classinfo.ClassHeader;
+import org.classinfo.ClassInfo;
+import org.classinfo.ClassVisitor;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClassVisitorTest {
+
+    @Test
+    void testVisitor() throws IOException {
+        List<String> events = new ArrayList<>();
+        ClassInfo.accept(read(Function.class), new ClassVisitor() {
+            @Override
+            public void visitHeader(ClassHeader header) {
+                events.add("header " + header.getClassName());
+            }
+
+            @Override
+            public boolean visitMethod(int accessFlags, String name, String descriptor) {
+                events.add("method " + name + descriptor);
+                return true;
+            }
+
+            @Override
+            public void visitCode(int maxStack, int maxLocals, ByteBuffer code) {
+                events.add("code " + code.remaining());
+            }
+
+            @Override
+            public void visitAnnotation(AttributeInfo.Annotation annotation, boolean visible) {
+                events.add("annotation " + annotation.getType() + ' ' + visible);
+            }
+
+            @Override
+            public void visitEnd() {
+                events.add("end");
+            }
+        }, 0);
+        assertEquals(events.get(0), "header " + Function.class.getName());
+        assertEquals(events.get(1), "annotation Ljava/lang/FunctionalInterface; true");
+        assertTrue(events.contains("method apply(Ljava/lang/Object;)Ljava/lang/Object;"));
+        assertTrue(events.stream().anyMatch(event -> event.startsWith("code ")));
+        assertEquals(events.get(events.size() - 1), "end");
+    }
+
+    @Test
+    void testSkipCode() throws IOException {
+        List<String> attributes = new ArrayList<>();
+        ClassInfo.accept(read(Function.class), new ClassVisitor() {
+            @Override
+            public boolean visitAttribute(String name, ByteBuffer content) {
+                attributes.add(name);
+                return true;
+            }
+        }, ClassInfo.SKIP_CODE);
+        assertTrue(!attributes.isEmpty());
+        assertTrue(!attributes.contains("Code"));
+    }
+
+    private static ByteBuffer read(Class<?> cls) throws IOException {
+        try (InputStream in = cls.getResourceAsStream('/' + cls.getName().replace('.', '/') + ".class")) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+}